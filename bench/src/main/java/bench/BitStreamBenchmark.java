@@ -0,0 +1,108 @@
+package bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * In-memory hot loops: histogram, BitOutputStream encode and BitInputStream table decode.
+ * No disk involved, so these show the raw codec speed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BitStreamBenchmark {
+
+    @Param({"TEXT", "BINARY", "SKEWED", "RANDOM", "SINGLE"})
+    public Corpus corpus;
+
+    @Param({"1048576"})
+    public int size;
+
+    private byte[] data;
+    private long[] codes;
+    private int[] lengths;
+    private byte[] encoded;
+    private Object decoder;
+    private byte[] decoded;
+
+    @Setup
+    public void setup() throws Throwable {
+        data = corpus.generate(size);
+        int[] counts = new int[256];
+        Codec.count(data, 0, data.length, counts);
+        long[] frequencies = new long[256];
+        for (int i = 0; i < 256; i++) {
+            frequencies[i] = counts[i];
+        }
+
+        Object root = Codec.buildTree(frequencies);
+        Object table = Codec.generatePackedCodes(root);
+        codes = Codec.codes(table);
+        lengths = Codec.lengths(table);
+        decoder = Codec.decoderFromTree(root);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        encode(out);
+        encoded = out.toByteArray();
+        decoded = new byte[size];
+    }
+
+    @Benchmark
+    public int[] countFrequencies(Throughput throughput) throws Throwable {
+        int[] counts = new int[256];
+        Codec.count(data, 0, data.length, counts);
+        throughput.add(size);
+        return counts;
+    }
+
+    @Benchmark
+    public void writeBits(Throughput throughput) throws Throwable {
+        encode(new DiscardingOutputStream());
+        throughput.add(size);
+    }
+
+    @Benchmark
+    public byte[] tableDecode(Throughput throughput) throws Throwable {
+        Object in = Codec.newBitInputStream(new ByteArrayInputStream(encoded), size);
+        Codec.decode(decoder, in, decoded, 0, size);
+        throughput.add(size);
+        return decoded;
+    }
+
+    private void encode(OutputStream target) throws Throwable {
+        Object out = Codec.newBitOutputStream(target);
+        for (byte b : data) {
+            int symbol = b & 0xFF;
+            Codec.writeBits(out, codes[symbol], lengths[symbol]);
+        }
+        Codec.close(out);
+    }
+
+    // Measures the encoder, not the copy into a growing array
+    private static final class DiscardingOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package bench;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Bridge to the codec classes.
+ * The application lives in the default package, which Java code in a named package
+ * (and JMH requires one) cannot reference directly. The handles are static final,
+ * so the JIT treats them as constants and inlines the calls like direct ones.
+ */
+final class Codec {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final Class<?> NODE = load("HuffmanNode");
+    private static final Class<?> CODE_TABLE = load("CodeTable");
+    private static final Class<?> DECODER = load("HuffmanDecoder");
+    private static final Class<?> BIT_OUT = load("BitOutputStream");
+    private static final Class<?> BIT_IN = load("BitInputStream");
+
+    private static final MethodHandle BUILD_TREE = findStatic("HuffmanTree", "buildTree", NODE, long[].class);
+    private static final MethodHandle GENERATE_CODES = findStatic("HuffmanTree", "generateCodes", String[].class, NODE);
+    private static final MethodHandle GENERATE_PACKED = findStatic("HuffmanTree", "generatePackedCodes", CODE_TABLE, NODE);
+    private static final MethodHandle CODES = getter(CODE_TABLE, "codes", long[].class);
+    private static final MethodHandle LENGTHS = getter(CODE_TABLE, "lengths", int[].class);
+    private static final MethodHandle DECODER_FROM_TREE = findStatic("HuffmanDecoder", "fromTree", DECODER, NODE);
+
+    private static final MethodHandle NEW_BIT_OUT = constructor(BIT_OUT, OutputStream.class);
+    private static final MethodHandle WRITE_BITS = virtual(BIT_OUT, "writeBits", void.class, long.class, int.class);
+    private static final MethodHandle CLOSE_BIT_OUT = virtual(BIT_OUT, "close", void.class);
+    private static final MethodHandle NEW_BIT_IN = constructor(BIT_IN, InputStream.class, long.class);
+    private static final MethodHandle DECODE = virtual(DECODER, "decode", int.class, BIT_IN, byte[].class, int.class, int.class);
+
+    private static final MethodHandle COUNT = findStatic("FrequencyCounter", "count", void.class, byte[].class, int.class, int.class, int[].class);
+    private static final MethodHandle COMPRESS = findStatic("HuffmanCompressor", "compress", void.class, String.class, String.class, int.class);
+    private static final MethodHandle DECOMPRESS = findStatic("HuffmanCompressor", "decompress", String.class, String.class);
+    private static final MethodHandle FORMAT = staticField("HuffmanCompressor", "FORMAT_CANONICAL");
+
+    private Codec() {
+    }
+
+    static Object buildTree(long[] frequencies) throws Throwable {
+        return (Object) BUILD_TREE.invokeExact(frequencies);
+    }
+
+    static String[] generateCodes(Object root) throws Throwable {
+        return (String[]) GENERATE_CODES.invokeExact(root);
+    }
+
+    static Object generatePackedCodes(Object root) throws Throwable {
+        return (Object) GENERATE_PACKED.invokeExact(root);
+    }
+
+    static long[] codes(Object codeTable) throws Throwable {
+        return (long[]) CODES.invokeExact(codeTable);
+    }
+
+    static int[] lengths(Object codeTable) throws Throwable {
+        return (int[]) LENGTHS.invokeExact(codeTable);
+    }
+
+    static Object decoderFromTree(Object root) throws Throwable {
+        return (Object) DECODER_FROM_TREE.invokeExact(root);
+    }
+
+    static Object newBitOutputStream(OutputStream out) throws Throwable {
+        return (Object) NEW_BIT_OUT.invokeExact(out);
+    }
+
+    static void writeBits(Object bitOut, long bits, int len) throws Throwable {
+        WRITE_BITS.invokeExact(bitOut, bits, len);
+    }
+
+    static void close(Object bitOut) throws Throwable {
+        CLOSE_BIT_OUT.invokeExact(bitOut);
+    }
+
+    static Object newBitInputStream(InputStream in, long bytesToRead) throws Throwable {
+        return (Object) NEW_BIT_IN.invokeExact(in, bytesToRead);
+    }
+
+    static int decode(Object decoder, Object bitIn, byte[] dst, int off, int len) throws Throwable {
+        return (int) DECODE.invokeExact(decoder, bitIn, dst, off, len);
+    }
+
+    static void count(byte[] data, int off, int len, int[] frequencies) throws Throwable {
+        COUNT.invokeExact(data, off, len, frequencies);
+    }
+
+    static void compress(String input, String output) throws Throwable {
+        COMPRESS.invokeExact(input, output, (int) FORMAT.invokeExact());
+    }
+
+    static String decompress(String input) throws Throwable {
+        return (String) DECOMPRESS.invokeExact(input);
+    }
+
+    // ---- Lookup helpers: codec classes in the handle types are replaced by Object ----
+
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Codec class not on the classpath: " + name, e);
+        }
+    }
+
+    private static MethodHandle findStatic(String owner, String name, Class<?> ret, Class<?>... params) {
+        try {
+            return erase(LOOKUP.findStatic(load(owner), name, MethodType.methodType(ret, params)));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(owner + "." + name, e);
+        }
+    }
+
+    private static MethodHandle virtual(Class<?> owner, String name, Class<?> ret, Class<?>... params) {
+        try {
+            return erase(LOOKUP.findVirtual(owner, name, MethodType.methodType(ret, params)));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(owner.getName() + "." + name, e);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> owner, Class<?>... params) {
+        try {
+            return erase(LOOKUP.findConstructor(owner, MethodType.methodType(void.class, params)));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(owner.getName() + ".<init>", e);
+        }
+    }
+
+    private static MethodHandle getter(Class<?> owner, String name, Class<?> type) {
+        try {
+            return erase(LOOKUP.findGetter(owner, name, type));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(owner.getName() + "." + name, e);
+        }
+    }
+
+    private static MethodHandle staticField(String owner, String name) {
+        try {
+            return LOOKUP.findStaticGetter(load(owner), name, int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(owner + "." + name, e);
+        }
+    }
+
+    private static MethodHandle erase(MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isCodecClass(type.parameterType(i))) type = type.changeParameterType(i, Object.class);
+        }
+        if (isCodecClass(type.returnType())) type = type.changeReturnType(Object.class);
+        return handle.asType(type);
+    }
+
+    private static boolean isCodecClass(Class<?> type) {
+        return type == NODE || type == CODE_TABLE || type == DECODER || type == BIT_OUT || type == BIT_IN;
+    }
+}
@@ -0,0 +1,92 @@
+package bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end: HuffmanCompressor.compress / decompress on real files (temp directory).
+ * Includes header handling and file I/O, so this is what a user of the app sees.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+    @Param({"TEXT", "BINARY", "SKEWED", "RANDOM", "SINGLE"})
+    public Corpus corpus;
+
+    @Param({"8388608"})
+    public int size;
+
+    private File workDir;
+    private File input;
+    private File compressed;
+    private File scratch;
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable {
+        workDir = Files.createTempDirectory("huff-bench").toFile();
+        File inputDir = new File(workDir, "in");
+        File outputDir = new File(workDir, "out");
+        inputDir.mkdirs();
+        outputDir.mkdirs();
+
+        // Input and compressed file live in different folders: decompress restores next to the .huff
+        input = new File(inputDir, corpus.name().toLowerCase() + ".bin");
+        try (OutputStream out = new FileOutputStream(input)) {
+            out.write(corpus.generate(size));
+        }
+        compressed = new File(outputDir, input.getName() + ".huff");
+        scratch = new File(workDir, "scratch.huff");
+        Codec.compress(input.getAbsolutePath(), compressed.getAbsolutePath());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        deleteRecursively(workDir);
+    }
+
+    @Benchmark
+    public void compress(Throughput throughput) throws Throwable {
+        Codec.compress(input.getAbsolutePath(), scratch.getAbsolutePath());
+        throughput.add(size);
+    }
+
+    @Benchmark
+    public String decompress(Throughput throughput) throws Throwable {
+        String restored = Codec.decompress(compressed.getAbsolutePath());
+        throughput.add(size);
+        return restored;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
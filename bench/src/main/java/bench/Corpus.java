@@ -0,0 +1,83 @@
+package bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generated benchmark inputs with very different entropy.
+ * Fixed seeds, so every run (and every machine) measures the same bytes.
+ */
+public enum Corpus {
+
+    /** English-like words, spaces and newlines: ~4.5 bits per byte. */
+    TEXT {
+        @Override
+        byte[] generate(int size, Random random) {
+            String[] words = {"the", "of", "and", "to", "in", "is", "that", "for", "it", "as", "was", "with",
+                    "be", "by", "on", "not", "he", "this", "are", "or", "his", "from", "at", "which",
+                    "compression", "huffman", "archive", "block", "table", "decoder", "stream", "file"};
+            StringBuilder text = new StringBuilder(size + 32);
+            while (text.length() < size) {
+                text.append(words[Math.min(words.length - 1, (int) Math.abs(random.nextGaussian() * 8))]);
+                text.append(random.nextInt(12) == 0 ? '\n' : ' ');
+            }
+            return Arrays.copyOf(text.toString().getBytes(), size);
+        }
+    },
+
+    /** Structured binary: small little-endian integers, zero padding and some noise. */
+    BINARY {
+        @Override
+        byte[] generate(int size, Random random) {
+            byte[] data = new byte[size];
+            for (int i = 0; i + 16 <= size; i += 16) {
+                int value = random.nextInt(4096);
+                data[i] = (byte) value;
+                data[i + 1] = (byte) (value >>> 8);
+                data[i + 4] = (byte) random.nextInt(16);
+                data[i + 8] = (byte) random.nextInt(256);
+                data[i + 12] = (byte) 0xFF;
+            }
+            return data;
+        }
+    },
+
+    /** Geometric distribution: byte k appears about half as often as byte k-1 (deep trees, long codes). */
+    SKEWED {
+        @Override
+        byte[] generate(int size, Random random) {
+            byte[] data = new byte[size];
+            for (int i = 0; i < size; i++) {
+                int k = Long.numberOfTrailingZeros(random.nextLong() | Long.MIN_VALUE);
+                data[i] = (byte) k;
+            }
+            return data;
+        }
+    },
+
+    /** Uniform random bytes: incompressible, every code is 8 bits. */
+    RANDOM {
+        @Override
+        byte[] generate(int size, Random random) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            return data;
+        }
+    },
+
+    /** One byte value repeated: the single-symbol edge case (1 bit per byte). */
+    SINGLE {
+        @Override
+        byte[] generate(int size, Random random) {
+            byte[] data = new byte[size];
+            Arrays.fill(data, (byte) 'A');
+            return data;
+        }
+    };
+
+    abstract byte[] generate(int size, Random random);
+
+    byte[] generate(int size) {
+        return generate(size, new Random(0x5EEDL + ordinal()));
+    }
+}
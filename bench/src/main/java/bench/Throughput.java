@@ -0,0 +1,31 @@
+package bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Extra JMH counter: input bytes processed, reported as MB/s (":megabytes" rows, unit ops/s).
+ * Allocation rate comes from the GC profiler: run with -prof gc.
+ */
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+@State(Scope.Thread)
+public class Throughput {
+
+    private long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        bytes = 0;
+    }
+
+    void add(long count) {
+        bytes += count;
+    }
+
+    public double megabytes() {
+        return bytes / 1e6;
+    }
+}
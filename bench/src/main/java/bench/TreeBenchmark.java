@@ -0,0 +1,61 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Table construction: HuffmanTree.buildTree and the two code generators.
+ * Cost depends on the number of distinct bytes and the tree shape, not on the input size.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TreeBenchmark {
+
+    @Param({"TEXT", "BINARY", "SKEWED", "RANDOM", "SINGLE"})
+    public Corpus corpus;
+
+    private long[] frequencies;
+    private Object root;
+
+    @Setup
+    public void setup() throws Throwable {
+        byte[] data = corpus.generate(1 << 20);
+        int[] counts = new int[256];
+        Codec.count(data, 0, data.length, counts);
+        frequencies = new long[256];
+        for (int i = 0; i < 256; i++) {
+            frequencies[i] = counts[i];
+        }
+        root = Codec.buildTree(frequencies);
+    }
+
+    @Benchmark
+    public Object buildTree() throws Throwable {
+        return Codec.buildTree(frequencies);
+    }
+
+    @Benchmark
+    public String[] generateCodes() throws Throwable {
+        return Codec.generateCodes(root);
+    }
+
+    @Benchmark
+    public Object generatePackedCodes() throws Throwable {
+        return Codec.generatePackedCodes(root);
+    }
+}
@@ -0,0 +1,150 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The chunked AES-GCM format (version 2): round trips, and every way a file can be wrong.
+ */
+class CryptoModuleTest {
+
+    private static final int CHUNK = 1 << 20;                 // Plaintext per chunk
+    private static final int HEADER = 4 + 1 + 4 + 16 + 4 + 16; // [HENC][version][chunk][fileId][iterations][salt]
+    private static final int RECORD = 12 + CHUNK + 16;        // [nonce][ciphertext][tag]
+
+    @TempDir
+    File dir;
+
+    private static byte[] data(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private File encrypt(byte[] data, String password) throws Exception {
+        File plain = new File(dir, "plain.bin");
+        Files.write(plain.toPath(), data);
+        File encrypted = new File(dir, "plain.bin.enc");
+        CryptoModule.encrypt(plain, encrypted, password);
+        return encrypted;
+    }
+
+    private byte[] decrypt(File encrypted, String password) throws Exception {
+        File restored = new File(dir, "restored.bin");
+        CryptoModule.decrypt(encrypted, restored, password);
+        return Files.readAllBytes(restored.toPath());
+    }
+
+    @Test
+    void roundTripAcrossChunkBoundaries() throws Exception {
+        for (int size : new int[]{0, 1, CHUNK - 1, CHUNK, CHUNK + 1, 3 * CHUNK + 12_345}) {
+            byte[] data = data(size);
+            File encrypted = encrypt(data, "secret");
+            long chunks = Math.max(1, (size + CHUNK - 1) / CHUNK);
+            assertEquals(HEADER + size + chunks * (12 + 16), encrypted.length(), size + " bytes");
+            assertArrayEquals(data, decrypt(encrypted, "secret"), size + " bytes");
+        }
+    }
+
+    @Test
+    void headerIsVersion2() throws Exception {
+        byte[] header = Arrays.copyOf(Files.readAllBytes(encrypt(data(100), "secret").toPath()), HEADER);
+        assertEquals("HENC", new String(header, 0, 4, StandardCharsets.US_ASCII));
+        assertEquals(2, header[4]);
+    }
+
+    @Test
+    void sameDataNeverEncryptsTheSameWay() throws Exception {
+        byte[] data = data(1000);
+        byte[] first = Files.readAllBytes(encrypt(data, "secret").toPath());
+        byte[] second = Files.readAllBytes(encrypt(data, "secret").toPath());
+        assertFalse(Arrays.equals(first, second));
+    }
+
+    @Test
+    void wrongPasswordFailsWithoutOutput() throws Exception {
+        File encrypted = encrypt(data(2 * CHUNK), "secret");
+        File restored = new File(dir, "restored.bin");
+        IOException e = assertThrows(IOException.class, () -> CryptoModule.decrypt(encrypted, restored, "Secret"));
+        assertTrue(e.getMessage().contains("Wrong password"), e.getMessage());
+        assertFalse(restored.exists());
+        assertFalse(CryptoModule.verifyChunk(encrypted, "Secret", 0));
+    }
+
+    @Test
+    void truncatedFilesFail() throws Exception {
+        byte[] whole = Files.readAllBytes(encrypt(data(3 * CHUNK), "secret").toPath());
+        File cut = new File(dir, "cut.enc");
+        int[] lengths = {
+                10,                        // Inside the header
+                HEADER,                    // Header only
+                HEADER + 20,               // Shorter than a nonce and a tag
+                HEADER + RECORD + 1000,    // In the middle of a record
+                HEADER + 2 * RECORD,       // Exactly at a chunk boundary: the last chunk is missing
+        };
+        for (int length : lengths) {
+            Files.write(cut.toPath(), Arrays.copyOf(whole, length));
+            assertThrows(IOException.class, () -> decrypt(cut, "secret"), length + " bytes");
+        }
+    }
+
+    @Test
+    void modifiedOrReorderedChunksFail() throws Exception {
+        File encrypted = encrypt(data(3 * CHUNK), "secret");
+        byte[] whole = Files.readAllBytes(encrypted.toPath());
+
+        File modified = new File(dir, "modified.enc");
+        byte[] flipped = whole.clone();
+        flipped[HEADER + RECORD + 500] ^= 1;
+        Files.write(modified.toPath(), flipped);
+        assertThrows(IOException.class, () -> decrypt(modified, "secret"));
+        assertTrue(CryptoModule.verifyChunk(modified, "secret", 0));
+        assertFalse(CryptoModule.verifyChunk(modified, "secret", 1));
+
+        File swapped = new File(dir, "swapped.enc");
+        byte[] reordered = whole.clone();
+        System.arraycopy(whole, HEADER, reordered, HEADER + RECORD, RECORD);
+        System.arraycopy(whole, HEADER + RECORD, reordered, HEADER, RECORD);
+        Files.write(swapped.toPath(), reordered);
+        assertThrows(IOException.class, () -> decrypt(swapped, "secret"));
+    }
+
+    @Test
+    void singleChunksDecryptOnTheirOwn() throws Exception {
+        byte[] data = data(2 * CHUNK + 5);
+        File encrypted = encrypt(data, "secret");
+        assertEquals(3, CryptoModule.chunkCount(encrypted));
+        assertArrayEquals(Arrays.copyOfRange(data, CHUNK, 2 * CHUNK), CryptoModule.decryptChunk(encrypted, "secret", 1));
+        assertArrayEquals(Arrays.copyOfRange(data, 2 * CHUNK, data.length), CryptoModule.decryptChunk(encrypted, "secret", 2));
+        assertThrows(IOException.class, () -> CryptoModule.decryptChunk(encrypted, "secret", 3));
+    }
+
+    @Test
+    void legacyCbcFilesStillDecrypt() throws Exception {
+        // Old format: [16-byte IV][AES/CBC/PKCS5Padding], key = SHA-256 of the password
+        byte[] data = data(50_000);
+        byte[] key = MessageDigest.getInstance("SHA-256").digest("secret".getBytes(StandardCharsets.UTF_8));
+        byte[] iv = new byte[16];
+        new Random(7).nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+        File legacy = new File(dir, "legacy.enc");
+        try (RandomAccessFile file = new RandomAccessFile(legacy, "rw")) {
+            file.write(iv);
+            file.write(cipher.doFinal(data));
+        }
+        assertArrayEquals(data, decrypt(legacy, "secret"));
+    }
+}
@@ -0,0 +1,221 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Every transfer mode over loopback, into a FileReceiver, and what the receiver does with
+ * senders that misbehave.
+ */
+class FileReceiverTest {
+
+    private static final String HOST = "127.0.0.1";
+
+    @TempDir
+    File dir;
+
+    private File outbox;
+    private File inbox;
+    private FileReceiver receiver;
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void startReceiver() throws IOException {
+        outbox = new File(dir, "outbox");
+        inbox = new File(dir, "inbox");
+        outbox.mkdir();
+        inbox.mkdir();
+        receiver = new FileReceiver(0, inbox, new TransferListener() {
+            @Override
+            public void fileReceived(File file, long bytes, long nanos) {
+                events.add("received " + file.getName());
+            }
+
+            @Override
+            public void transferResumed(String name, long verifiedBytes, long size) {
+                events.add("resumed " + name + " at " + verifiedBytes);
+            }
+
+            @Override
+            public void transferFailed(String name, Exception error) {
+                events.add("failed " + name + ": " + error);
+            }
+        });
+    }
+
+    @AfterEach
+    void stopReceiver() throws IOException {
+        receiver.close();
+    }
+
+    private File file(String name, int size) throws IOException {
+        byte[] data = new byte[size];
+        Random random = new Random(size);
+        for (int i = 0; i < size; i++) data[i] = (byte) ('a' + random.nextInt(16)); // Compressible
+        File file = new File(outbox, name);
+        Files.write(file.toPath(), data);
+        return file;
+    }
+
+    private String nextEvent() throws InterruptedException {
+        String event = events.poll(10, TimeUnit.SECONDS);
+        assertNotNull(event, "no event within 10 s");
+        return event;
+    }
+
+    private void assertReceived(File sent) throws Exception {
+        assertEquals("received " + sent.getName(), nextEvent());
+        assertArrayEquals(Files.readAllBytes(sent.toPath()), Files.readAllBytes(new File(inbox, sent.getName()).toPath()));
+    }
+
+    @Test
+    void plainTransfer() throws Exception {
+        for (int size : new int[]{0, 1, 3_000_000}) {
+            File file = file("plain" + size, size);
+            NetworkModule.send(file, HOST, receiver.getPort());
+            assertReceived(file);
+        }
+    }
+
+    @Test
+    void huffmanTransfer() throws Exception {
+        for (int size : new int[]{0, 1, 3_000_000}) {
+            File file = file("huffman" + size, size);
+            NetworkModule.send(file, HOST, receiver.getPort(), true);
+            assertReceived(file);
+        }
+    }
+
+    @Test
+    void resumableTransfer() throws Exception {
+        for (int size : new int[]{0, 1, 3_000_000}) {
+            File file = file("resumable" + size, size);
+            NetworkModule.sendResumable(file, HOST, receiver.getPort());
+            assertReceived(file);
+        }
+    }
+
+    @Test
+    void resumableTransferGoesOnFromThePartFile() throws Exception {
+        int chunk = NetworkModule.RESUME_CHUNK_SIZE;
+        File file = file("big.bin", 3 * chunk + 500);
+        // What an interrupted transfer left: one and a half chunks, of which only whole chunks count
+        File part = new File(inbox, String.format("big.bin.%x-%x.part", file.length(), file.lastModified()));
+        Files.write(part.toPath(), Arrays.copyOf(Files.readAllBytes(file.toPath()), chunk + chunk / 2));
+
+        NetworkModule.sendResumable(file, HOST, receiver.getPort());
+        assertEquals("resumed big.bin at " + chunk, nextEvent());
+        assertReceived(file);
+        assertFalse(part.exists());
+        assertEquals(file.lastModified(), new File(inbox, "big.bin").lastModified());
+    }
+
+    @Test
+    void parallelTransfer() throws Exception {
+        for (int size : new int[]{0, 1, 5_000_003}) {
+            for (int streams : new int[]{1, 4}) {
+                File file = file("parallel" + size + "x" + streams, size);
+                NetworkModule.sendParallel(file, HOST, receiver.getPort(), streams, null);
+                assertReceived(file);
+            }
+        }
+        assertEquals(0, inbox.list((folder, name) -> name.endsWith(".part")).length);
+    }
+
+    // One stream of a 2-stream parallel transfer of 2000 bytes, written by hand
+    private static int sendStream(int port, String name, long transferId, int stream, long offset, long length) throws IOException {
+        try (Socket socket = new Socket(HOST, port)) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(NetworkModule.MAGIC);
+            out.writeByte(NetworkModule.MODE_PARALLEL);
+            out.writeUTF(name);
+            out.writeLong(2000);
+            out.writeLong(0);
+            out.writeLong(transferId);
+            out.writeInt(2);
+            out.writeInt(stream);
+            out.writeLong(offset);
+            out.writeLong(length);
+            out.write(new byte[(int) length]);
+            out.flush();
+            socket.setSoTimeout(5000);
+            return socket.getInputStream().read();
+        } catch (IOException e) {
+            return -1; // Reset by the receiver
+        }
+    }
+
+    @Test
+    void parallelStreamSentTwiceIsRefused() throws Exception {
+        assertEquals(NetworkModule.ACK, sendStream(receiver.getPort(), "twice", 7, 0, 0, 1000));
+        assertEquals(-1, sendStream(receiver.getPort(), "twice", 7, 0, 0, 1000));
+        String event = nextEvent();
+        assertTrue(event.startsWith("failed twice") && event.contains("arrived twice"), event);
+        Thread.sleep(200);
+        assertFalse(new File(inbox, "twice").exists());
+    }
+
+    @Test
+    void parallelRangeMustBeTheSendersSplit() throws Exception {
+        assertEquals(-1, sendStream(receiver.getPort(), "odd", 8, 1, 500, 1500));
+        String event = nextEvent();
+        assertTrue(event.startsWith("failed odd") && event.contains("Bad range"), event);
+        assertFalse(new File(inbox, "odd").exists());
+    }
+
+    @Test
+    void stalledSenderIsDropped() throws Exception {
+        receiver.setReadTimeout(300);
+        try (Socket socket = new Socket(HOST, receiver.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF("stalled");
+            out.writeLong(1000);
+            out.write(new byte[10]);
+            out.flush();
+            String event = nextEvent();
+            assertTrue(event.startsWith("failed stalled") && event.contains("SocketTimeoutException"), event);
+        }
+
+        // The worker is free again
+        File file = file("after", 1000);
+        NetworkModule.send(file, HOST, receiver.getPort());
+        assertReceived(file);
+    }
+
+    @Test
+    void senderHangingUpEarlyFails() throws Exception {
+        try (Socket socket = new Socket(HOST, receiver.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF("cut");
+            out.writeLong(5000);
+            out.write(new byte[100]);
+        }
+        String event = nextEvent();
+        assertTrue(event.startsWith("failed cut") && event.contains("EOFException"), event);
+    }
+
+    @Test
+    void namesCannotLeaveTheSaveFolder() throws Exception {
+        File file = file("escape", 10);
+        try (Socket socket = new Socket(HOST, receiver.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF("../escape");
+            out.writeLong(10);
+            out.write(Files.readAllBytes(file.toPath()));
+        }
+        assertEquals("received escape", nextEvent());
+        assertTrue(new File(inbox, "escape").exists());
+        assertFalse(new File(dir, "escape").exists());
+    }
+}
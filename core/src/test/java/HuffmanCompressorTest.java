@@ -0,0 +1,156 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round trips through every single-file .huff format, file to file and stream to stream.
+ */
+class HuffmanCompressorTest {
+
+    @TempDir
+    File dir;
+
+    // Skewed like text, so the codes have very different lengths
+    private static byte[] text(int size, long seed) {
+        Random random = new Random(seed);
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) ('a' + (int) Math.abs(random.nextGaussian() * 5) % 26);
+        }
+        return data;
+    }
+
+    // Every byte value about equally often: nothing to gain, codes of 8 bits and more
+    private static byte[] noise(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private byte[] roundTrip(byte[] data, int format) throws IOException {
+        File original = new File(dir, "data.bin");
+        Files.write(original.toPath(), data);
+        File compressed = new File(dir, "data.huff");
+        HuffmanCompressor.compress(original.getPath(), compressed.getPath(), format);
+
+        File outputDir = new File(dir, "out");
+        outputDir.mkdir();
+        String restored = HuffmanCompressor.decompress(compressed.getPath(), outputDir);
+        assertEquals(new File(outputDir, "data.bin").getAbsolutePath(), restored);
+        return Files.readAllBytes(new File(restored).toPath());
+    }
+
+    private void assertRoundTrip(byte[] data, int format) throws IOException {
+        assertArrayEquals(data, roundTrip(data, format), "format " + format + ", " + data.length + " bytes");
+    }
+
+    @Test
+    void classicRoundTrip() throws IOException {
+        assertRoundTrip(text(100_000, 1), HuffmanCompressor.FORMAT_CLASSIC);
+        assertRoundTrip(noise(100_000, 2), HuffmanCompressor.FORMAT_CLASSIC);
+    }
+
+    @Test
+    void canonicalRoundTrip() throws IOException {
+        assertRoundTrip(text(300_000, 3), HuffmanCompressor.FORMAT_CANONICAL);
+        assertRoundTrip(noise(300_000, 4), HuffmanCompressor.FORMAT_CANONICAL);
+    }
+
+    @Test
+    void canonicalLimitsCodeLengths() throws IOException {
+        // Fibonacci frequencies give the deepest possible tree, deeper than the length limit
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        long a = 1, b = 1;
+        for (int symbol = 0; symbol < 30; symbol++) {
+            for (long i = 0; i < a; i++) data.write(symbol);
+            long next = a + b;
+            a = b;
+            b = next;
+        }
+        assertRoundTrip(data.toByteArray(), HuffmanCompressor.FORMAT_CANONICAL);
+    }
+
+    @Test
+    void blocksRoundTrip() throws IOException {
+        // Several blocks plus a short last one
+        int size = 3 * HuffmanCompressor.DEFAULT_BLOCK_SIZE + 12_345;
+        assertRoundTrip(text(size, 5), HuffmanCompressor.FORMAT_BLOCKS);
+        assertRoundTrip(noise(size, 6), HuffmanCompressor.FORMAT_BLOCKS);
+    }
+
+    @Test
+    void adaptiveRoundTrip() throws IOException {
+        assertRoundTrip(text(200_000, 7), HuffmanCompressor.FORMAT_ADAPTIVE);
+        assertRoundTrip(noise(200_000, 8), HuffmanCompressor.FORMAT_ADAPTIVE);
+    }
+
+    @Test
+    void emptyAndSingleSymbolFiles() throws IOException {
+        byte[] single = new byte[10_000];
+        Arrays.fill(single, (byte) 'x');
+        int[] formats = {HuffmanCompressor.FORMAT_CLASSIC, HuffmanCompressor.FORMAT_CANONICAL,
+                HuffmanCompressor.FORMAT_BLOCKS, HuffmanCompressor.FORMAT_ADAPTIVE};
+        for (int format : formats) {
+            assertRoundTrip(new byte[0], format);
+            assertRoundTrip(new byte[]{42}, format);
+            assertRoundTrip(single, format);
+        }
+    }
+
+    @Test
+    void streamRoundTrip() throws IOException {
+        byte[] data = text(2 * HuffmanCompressor.DEFAULT_BLOCK_SIZE + 777, 9);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        HuffmanCompressor.compress(new ByteArrayInputStream(data), compressed);
+
+        ByteArrayOutputStream restored = new ByteArrayOutputStream();
+        HuffmanCompressor.decompress(new ByteArrayInputStream(compressed.toByteArray()), restored);
+        assertArrayEquals(data, restored.toByteArray());
+
+        // The same stream saved as a file: no name inside, so it is restored under the file's name
+        File file = new File(dir, "piped.huff");
+        Files.write(file.toPath(), compressed.toByteArray());
+        String path = HuffmanCompressor.decompress(file.getPath());
+        assertEquals(new File(dir, "piped").getAbsolutePath(), path);
+        assertArrayEquals(data, Files.readAllBytes(new File(path).toPath()));
+    }
+
+    @Test
+    void fileFormatsDecodeFromStreams() throws IOException {
+        byte[] data = text(5 * HuffmanCompressor.DEFAULT_BLOCK_SIZE, 10);
+        File original = new File(dir, "data.bin");
+        Files.write(original.toPath(), data);
+        int[] formats = {HuffmanCompressor.FORMAT_CLASSIC, HuffmanCompressor.FORMAT_CANONICAL,
+                HuffmanCompressor.FORMAT_BLOCKS, HuffmanCompressor.FORMAT_ADAPTIVE};
+        for (int format : formats) {
+            File compressed = new File(dir, "data" + format + ".huff");
+            HuffmanCompressor.compress(original.getPath(), compressed.getPath(), format);
+            ByteArrayOutputStream restored = new ByteArrayOutputStream();
+            try (InputStream in = new FileInputStream(compressed)) {
+                HuffmanCompressor.decompress(in, restored);
+            }
+            assertArrayEquals(data, restored.toByteArray(), "format " + format);
+        }
+    }
+
+    @Test
+    void truncatedFileFailsWithoutLeavingOutput() throws IOException {
+        File original = new File(dir, "data.bin");
+        Files.write(original.toPath(), text(100_000, 11));
+        File compressed = new File(dir, "data.huff");
+        HuffmanCompressor.compress(original.getPath(), compressed.getPath(), HuffmanCompressor.FORMAT_CANONICAL);
+        byte[] whole = Files.readAllBytes(compressed.toPath());
+        Files.write(compressed.toPath(), Arrays.copyOf(whole, whole.length / 2));
+
+        File outputDir = new File(dir, "out");
+        outputDir.mkdir();
+        assertThrows(EOFException.class, () -> HuffmanCompressor.decompress(compressed.getPath(), outputDir));
+        assertFalse(new File(outputDir, "data.bin").exists());
+    }
+}
@@ -0,0 +1,98 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * archive -> compress -> encrypt in one pass and back, and what is left after a failed unpack.
+ */
+class PipelineTest {
+
+    @TempDir
+    File dir;
+
+    private File folder;
+    private byte[] big;
+
+    @BeforeEach
+    void createFolder() throws IOException {
+        folder = new File(dir, "folder");
+        new File(folder, "sub").mkdirs();
+        big = new byte[3 << 20];
+        Random random = new Random(3);
+        for (int i = 0; i < big.length; i++) big[i] = (byte) ('a' + random.nextInt(8));
+        Files.write(new File(folder, "big.txt").toPath(), big);
+        Files.write(new File(folder, "sub/small.txt").toPath(), "small".getBytes("UTF-8"));
+    }
+
+    @Test
+    void folderRoundTrip() throws Exception {
+        File packed = new File(dir, "folder.henc");
+        Pipeline.pack(folder, packed, "secret");
+        assertTrue(packed.length() < big.length, "compressed before it was encrypted");
+
+        File restored = new File(dir, "restored");
+        Pipeline.unpack(packed, restored, "secret", true);
+        assertArrayEquals(big, Files.readAllBytes(new File(restored, "big.txt").toPath()));
+        assertEquals("small", new String(Files.readAllBytes(new File(restored, "sub/small.txt").toPath()), "UTF-8"));
+    }
+
+    @Test
+    void fileRoundTripMatchesTheStepByStepFormats() throws Exception {
+        File packed = new File(dir, "big.henc");
+        Pipeline.pack(new File(folder, "big.txt"), packed, "secret");
+
+        File restored = new File(dir, "big.txt");
+        Pipeline.unpack(packed, restored, "secret", false);
+        assertArrayEquals(big, Files.readAllBytes(restored.toPath()));
+
+        // Step by step: decrypt to a .huff file, then decompress that
+        File huff = new File(dir, "big.huff");
+        CryptoModule.decrypt(packed, huff, "secret");
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        try (InputStream in = new FileInputStream(huff)) {
+            HuffmanCompressor.decompress(in, decoded);
+        }
+        assertArrayEquals(big, decoded.toByteArray());
+    }
+
+    @Test
+    void wrongPasswordLeavesNothingBehind() throws Exception {
+        File packedFolder = new File(dir, "folder.henc");
+        Pipeline.pack(folder, packedFolder, "secret");
+        File restored = new File(dir, "restored");
+        assertThrows(IOException.class, () -> Pipeline.unpack(packedFolder, restored, "wrong", true));
+        assertFalse(restored.exists());
+
+        File packedFile = new File(dir, "big.henc");
+        Pipeline.pack(new File(folder, "big.txt"), packedFile, "secret");
+        File restoredFile = new File(dir, "big.txt");
+        assertThrows(IOException.class, () -> Pipeline.unpack(packedFile, restoredFile, "wrong", false));
+        assertFalse(restoredFile.exists());
+    }
+
+    @Test
+    void failedUnpackKeepsAnExistingFolder() throws Exception {
+        File packed = new File(dir, "folder.henc");
+        Pipeline.pack(folder, packed, "secret");
+        File existing = new File(dir, "existing");
+        existing.mkdir();
+        File mine = new File(existing, "mine.txt");
+        Files.write(mine.toPath(), new byte[]{1});
+
+        assertThrows(IOException.class, () -> Pipeline.unpack(packed, existing, "wrong", true));
+        assertTrue(mine.exists());
+    }
+
+    @Test
+    void missingSourceLeavesNoOutput() {
+        File packed = new File(dir, "missing.henc");
+        assertThrows(IOException.class, () -> Pipeline.pack(new File(dir, "missing"), packed, "secret"));
+        assertFalse(packed.exists());
+    }
+}
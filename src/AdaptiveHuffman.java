@@ -0,0 +1,180 @@
+import java.io.*;
+
+/**
+ * Single-pass (adaptive) Huffman coding, FGK style.
+ * Encoder and decoder start from the same empty tree and update it after every
+ * symbol, so no frequency table is stored and the input is only read once.
+ *
+ * Tree layout: flat arrays indexed by node number order. Index 0 is the root and
+ * weights never increase with the index (the sibling property), so the "leader"
+ * of a weight block is found by stepping back through neighbouring slots.
+ * New symbols are sent as the code of the NYT ("not yet transmitted") node plus 9 raw bits.
+ */
+public class AdaptiveHuffman {
+
+    private static final int EOF_SYMBOL = 256;   // Ends the stream, so no length header is needed
+    private static final int SYMBOL_BITS = 9;    // Raw bits for a first occurrence (0-256)
+    private static final int MAX_NODES = 2 * (EOF_SYMBOL + 2) - 1;
+
+    private final long[] weight = new long[MAX_NODES];
+    private final int[] parent = new int[MAX_NODES];
+    private final int[] left = new int[MAX_NODES];   // -1 for leaves
+    private final int[] right = new int[MAX_NODES];
+    private final int[] symbol = new int[MAX_NODES]; // -1 for internal nodes and NYT
+    private final int[] leafOf = new int[EOF_SYMBOL + 1]; // Symbol -> node index, -1 if not seen yet
+    private final int[] path = new int[MAX_NODES];
+    private int nyt;
+    private int nodeCount;
+
+    public AdaptiveHuffman() {
+        java.util.Arrays.fill(leafOf, -1);
+        parent[0] = -1;
+        left[0] = -1;
+        right[0] = -1;
+        symbol[0] = -1;
+        nyt = 0;
+        nodeCount = 1;
+    }
+
+    /**
+     * COMPRESS: Encodes 'in' in a single pass. Closes 'out' when done.
+     */
+    public static void compress(InputStream in, OutputStream out) throws IOException {
+        AdaptiveHuffman model = new AdaptiveHuffman();
+        try (BitOutputStream bos = new BitOutputStream(out)) {
+            byte[] buffer = new byte[64 * 1024];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                for (int i = 0; i < bytesRead; i++) {
+                    model.encode(buffer[i] & 0xFF, bos);
+                }
+            }
+            model.encode(EOF_SYMBOL, bos);
+        }
+    }
+
+    /**
+     * DECOMPRESS: Decodes until the end-of-stream symbol.
+     */
+    public static void decompress(InputStream in, OutputStream out) throws IOException {
+        AdaptiveHuffman model = new AdaptiveHuffman();
+        BitInputStream bis = new BitInputStream(in, Long.MAX_VALUE);
+        int sym;
+        while ((sym = model.decode(bis)) != EOF_SYMBOL) {
+            out.write(sym);
+        }
+    }
+
+    /**
+     * Writes the current code of 'sym' and updates the tree.
+     */
+    public void encode(int sym, BitOutputStream out) throws IOException {
+        int node = leafOf[sym];
+        boolean isNew = (node == -1);
+        if (isNew) node = nyt;
+
+        // Walk up to the root, then send the path from the top down
+        int depth = 0;
+        for (int n = node; n != 0; n = parent[n]) {
+            path[depth++] = (right[parent[n]] == n) ? 1 : 0;
+        }
+        long bits = 0;
+        int len = 0;
+        for (int i = depth - 1; i >= 0; i--) {
+            bits = (bits << 1) | path[i];
+            if (++len == 56) {
+                out.writeBits(bits, len);
+                bits = 0;
+                len = 0;
+            }
+        }
+        if (len > 0) out.writeBits(bits, len);
+
+        if (isNew) out.writeBits(sym, SYMBOL_BITS);
+        update(sym);
+    }
+
+    /**
+     * Reads one symbol (0-255, or 256 at the end of the stream) and updates the tree.
+     */
+    public int decode(BitInputStream in) throws IOException {
+        int node = 0;
+        while (left[node] != -1) {
+            int bit = in.readBit();
+            if (bit == -1) throw new EOFException("Unexpected End of File in adaptive stream.");
+            node = (bit == 0) ? left[node] : right[node];
+        }
+
+        int sym;
+        if (node == nyt) {
+            sym = (int) in.readBits(SYMBOL_BITS);
+            if (sym > EOF_SYMBOL || leafOf[sym] != -1) throw new IOException("Corrupt data: bad new symbol " + sym);
+        } else {
+            sym = symbol[node];
+        }
+        update(sym);
+        return sym;
+    }
+
+    // FGK update: bump weights from the leaf up, swapping each node with its block leader first
+    private void update(int sym) {
+        int node = leafOf[sym];
+        if (node == -1) {
+            // Split NYT: it becomes an internal node with the new NYT (left) and the new leaf (right)
+            int internal = nyt;
+            int leaf = nodeCount;
+            int newNyt = nodeCount + 1;
+            nodeCount += 2;
+
+            left[internal] = newNyt;
+            right[internal] = leaf;
+            initLeaf(leaf, internal, sym);
+            initLeaf(newNyt, internal, -1);
+
+            leafOf[sym] = leaf;
+            nyt = newNyt;
+            node = leaf;
+        }
+
+        while (node != -1) {
+            int leader = node;
+            while (leader > 0 && weight[leader - 1] == weight[node]) leader--;
+            if (leader != node && leader != parent[node]) {
+                swap(node, leader);
+                node = leader;
+            }
+            weight[node]++;
+            node = parent[node];
+        }
+    }
+
+    private void initLeaf(int node, int parentNode, int sym) {
+        weight[node] = 0;
+        parent[node] = parentNode;
+        left[node] = -1;
+        right[node] = -1;
+        symbol[node] = sym;
+    }
+
+    // Swaps the subtrees in slots a and b (the slots stay attached to their parents)
+    private void swap(int a, int b) {
+        long w = weight[a]; weight[a] = weight[b]; weight[b] = w;
+        int l = left[a]; left[a] = left[b]; left[b] = l;
+        int r = right[a]; right[a] = right[b]; right[b] = r;
+        int s = symbol[a]; symbol[a] = symbol[b]; symbol[b] = s;
+
+        relink(a);
+        relink(b);
+        if (nyt == a) nyt = b;
+        else if (nyt == b) nyt = a;
+    }
+
+    private void relink(int node) {
+        if (left[node] != -1) {
+            parent[left[node]] = node;
+            parent[right[node]] = node;
+        } else if (symbol[node] >= 0) {
+            leafOf[symbol[node]] = node;
+        }
+    }
+}
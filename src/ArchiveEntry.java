@@ -0,0 +1,68 @@
+import java.io.*;
+
+/**
+ * One file of a compressed archive (HuffmanCompressor.FORMAT_ARCHIVE),
+ * as listed in the central directory at the end of the archive.
+ * The directory doubles as the manifest for incremental updates (path, size, mtime, SHA-256).
+ */
+public class ArchiveEntry {
+
+    static final int DIGEST_LENGTH = 32;
+
+    public final String path;        // Relative path, e.g. "docs/resume.pdf"
+    public final long offset;        // Where the entry header starts in the archive
+    public final long size;          // Original size in bytes
+    public final long storedSize;    // Size of the compressed blocks in the archive (0 = shares another entry's)
+    public final int crc;            // CRC32 of the original bytes (checked on extraction)
+    public final byte[] digest;      // SHA-256 content digest (Archiver.contentDigest, for incremental updates)
+    public final long lastModified;  // Of the original file when it was archived (for incremental updates)
+
+    public ArchiveEntry(String path, long offset, long size, long storedSize, int crc, byte[] digest, long lastModified) {
+        this.path = path;
+        this.offset = offset;
+        this.size = size;
+        this.storedSize = storedSize;
+        this.crc = crc;
+        this.digest = digest;
+        this.lastModified = lastModified;
+    }
+
+    // Directory record: [int pathLen][path][long offset][long size][long storedSize][int crc32][32B digest][long lastModified]
+    void write(DataOutputStream out) throws IOException {
+        byte[] pathBytes = path.getBytes("UTF-8");
+        out.writeInt(pathBytes.length);
+        out.write(pathBytes);
+        out.writeLong(offset);
+        out.writeLong(size);
+        out.writeLong(storedSize);
+        out.writeInt(crc);
+        out.write(digest);
+        out.writeLong(lastModified);
+    }
+
+    static ArchiveEntry read(DataInputStream in) throws IOException {
+        int pathLength = in.readInt();
+        if (pathLength <= 0 || pathLength > 1 << 16) {
+            throw new IOException("Corrupt archive: bad path length " + pathLength);
+        }
+        byte[] pathBytes = new byte[pathLength];
+        in.readFully(pathBytes);
+        String path = new String(pathBytes, "UTF-8");
+        long offset = in.readLong();
+        long size = in.readLong();
+        long storedSize = in.readLong();
+        int crc = in.readInt();
+        byte[] digest = new byte[DIGEST_LENGTH];
+        in.readFully(digest);
+        long lastModified = in.readLong();
+        if (offset < 0 || size < 0 || storedSize < 0) {
+            throw new IOException("Corrupt archive: bad directory record for " + path);
+        }
+        return new ArchiveEntry(path, offset, size, storedSize, crc, digest, lastModified);
+    }
+
+    @Override
+    public String toString() {
+        return path + " (" + size + " bytes)";
+    }
+}
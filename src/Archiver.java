@@ -1,12 +1,33 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
 
 public class Archiver {
 
     // 1. The Entry Point: Call this to start archiving a folder
     public void createArchive(File sourceFolder, File destinationFile) throws IOException {
+        createArchive(sourceFolder, new FileOutputStream(destinationFile));
+    }
+
+    /**
+     * Same as createArchive(File, File), into a stream (e.g. the first stage of a Pipeline).
+     * Closes 'destination' when done.
+     */
+    public void createArchive(File sourceFolder, OutputStream destination) throws IOException {
         // Use DataOutputStream to write Integers (lengths) and Longs (sizes) easily
-        try (FileOutputStream fos = new FileOutputStream(destinationFile);
-             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(destination))) {
 
             // Start the recursion
             addDirectoryToArchive(sourceFolder, sourceFolder, out);
@@ -40,9 +61,7 @@ public class Archiver {
         System.out.println("Archiving: " + file.getName());
 
         // A. Calculate Relative Path 
-        // We want "docs/resume.pdf", NOT "C:/Users/Admin/docs/resume.pdf"
-        String relativePath = rootBase.toURI().relativize(file.toURI()).getPath();
-        byte[] nameBytes = relativePath.getBytes("UTF-8");
+        byte[] nameBytes = relativePath(file, rootBase).getBytes("UTF-8");
 
         // B. Write Header
         out.writeInt(nameBytes.length); // 1. Name Length
@@ -58,4 +77,386 @@ public class Archiver {
             }
         }
     }
-}
\ No newline at end of file
+
+    // We want "docs/resume.pdf", NOT "C:/Users/Admin/docs/resume.pdf"
+    private static String relativePath(File file, File rootBase) {
+        return rootBase.toURI().relativize(file.toURI()).getPath();
+    }
+
+    // ==================== COMPRESSED ARCHIVE ====================
+    // HuffmanCompressor.FORMAT_ARCHIVE: every file is Huffman-coded on its own, no intermediate tar.
+    //   [0][5][UTF folderName][int blockSize]
+    //   entries: [int pathLen][path][long size][ceil(size / blockSize) x (int blockLength, block)]
+    //   [int 0]
+    //   central directory: [int entryCount][entryCount x ArchiveEntry record]
+    //   [long directoryOffset]
+    // Each block is a BlockCodec block with its own code table.
+    // The directory at the end lets Unarchiver find any single entry without reading the rest.
+    // With dedup, a file whose content was already stored gets no entry of its own: its directory
+    // record points at the first copy's entry and has a stored size of 0.
+    // An update copies the entries of unchanged files byte for byte from the previous archive,
+    // whose directory serves as the manifest.
+
+    public void createCompressedArchive(File sourceFolder, File destinationFile, int threads) throws IOException {
+        createCompressedArchive(sourceFolder, destinationFile, threads, false);
+    }
+
+    /**
+     * Archives a folder straight into a compressed .huff file.
+     * The blocks of all files are encoded concurrently on a pool of 'threads' workers,
+     * while this thread is the single writer that appends them to the archive in order.
+     * @param dedup Store identical files only once (content hashed with SHA-256)
+     */
+    public void createCompressedArchive(File sourceFolder, File destinationFile, int threads, boolean dedup) throws IOException {
+        writeCompressedArchive(sourceFolder, null, destinationFile, threads, dedup);
+    }
+
+    /**
+     * Incremental version of createCompressedArchive: files whose size and modification time match
+     * the previous archive's directory (or whose size and SHA-256 match, if only the time changed) are
+     * not compressed again. Their entries are copied over from the previous archive as they are,
+     * so the run time follows the amount of change rather than the size of the folder.
+     */
+    public void updateCompressedArchive(File sourceFolder, File previousArchive, File destinationFile,
+                                        int threads, boolean dedup) throws IOException {
+        if (previousArchive.getCanonicalFile().equals(destinationFile.getCanonicalFile())) {
+            throw new IOException("The update has to go to a new file, the previous archive is read while writing.");
+        }
+        writeCompressedArchive(sourceFolder, previousArchive, destinationFile, threads, dedup);
+    }
+
+    private void writeCompressedArchive(File sourceFolder, File previousArchive, File destinationFile,
+                                        int threads, boolean dedup) throws IOException {
+        // 1. Walk the tree
+        List<File> files = new ArrayList<>();
+        collectFiles(sourceFolder, files);
+        String[] paths = new String[files.size()];
+        long[] sizes = new long[files.size()];
+        long[] lastModified = new long[files.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            paths[i] = relativePath(files.get(i), sourceFolder);
+            sizes[i] = files.get(i).length();
+            lastModified[i] = files.get(i).lastModified();
+        }
+        int blockSize = HuffmanCompressor.DEFAULT_BLOCK_SIZE;
+        List<ArchiveEntry> directory = new ArrayList<>(files.size());
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        FileChannel[] channels = new FileChannel[files.size()];
+        FileChannel previous = null;
+        try (FileOutputStream fos = new FileOutputStream(destinationFile);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16))) {
+            int[] duplicateOf = dedup ? findDuplicates(files, sizes, pool) : null;
+            ArchiveEntry[] unchanged = null;
+            if (previousArchive != null) {
+                previous = FileChannel.open(previousArchive.toPath(), StandardOpenOption.READ);
+                unchanged = findUnchanged(files, paths, sizes, lastModified, previous, blockSize, pool);
+            }
+            // Files whose blocks the workers never have to read
+            boolean[] skip = new boolean[files.size()];
+            for (int i = 0; i < skip.length; i++) {
+                skip[i] = (duplicateOf != null && duplicateOf[i] >= 0) || (unchanged != null && unchanged[i] != null);
+            }
+
+            // 2. Header
+            out.writeByte(0);
+            out.writeByte(HuffmanCompressor.FORMAT_ARCHIVE);
+            out.writeUTF(sourceFolder.getName());
+            out.writeInt(blockSize);
+            long position = out.size(); // Tracked by hand from here on: size() stops counting at 2 GB
+
+            // 3. Entries: a bounded window of blocks in flight (across file boundaries),
+            //    written back in the same order they were submitted
+            ArrayDeque<Future<EncodedBlock>> inFlight = new ArrayDeque<>();
+            int window = threads * 2;
+            int nextFile = 0;
+            long nextStart = 0;
+            for (int f = 0; f < files.size(); f++) {
+                String path = paths[f];
+                if (duplicateOf != null && duplicateOf[f] >= 0) {
+                    // Same content as an earlier file: just point at its entry
+                    ArchiveEntry original = directory.get(duplicateOf[f]);
+                    directory.add(new ArchiveEntry(path, original.offset, sizes[f], 0, original.crc, original.digest, lastModified[f]));
+                    continue;
+                }
+                byte[] nameBytes = path.getBytes("UTF-8");
+                long entryOffset = position;
+                if (unchanged != null && unchanged[f] != null) {
+                    // Unchanged since the previous archive: copy its entry (same path, same blocks) as is
+                    ArchiveEntry old = unchanged[f];
+                    long length = 4 + nameBytes.length + 8 + old.storedSize;
+                    out.flush();
+                    copyRange(previous, old.offset, length, fos.getChannel());
+                    position += length;
+                    directory.add(new ArchiveEntry(path, entryOffset, sizes[f], old.storedSize, old.crc, old.digest, lastModified[f]));
+                    continue;
+                }
+                out.writeInt(nameBytes.length);
+                out.write(nameBytes);
+                out.writeLong(sizes[f]);
+                position += 4 + nameBytes.length + 8;
+
+                long storedSize = 0;
+                long crc = 0; // CRC32 of the empty file
+                MessageDigest content = newSha256();
+                for (long written = 0; written < sizes[f]; written += blockSize) {
+                    while (inFlight.size() < window && nextFile < files.size()) {
+                        if (nextStart >= sizes[nextFile] || skip[nextFile]) {
+                            nextFile++;
+                            nextStart = 0;
+                            continue;
+                        }
+                        if (channels[nextFile] == null) {
+                            channels[nextFile] = FileChannel.open(files.get(nextFile).toPath(), StandardOpenOption.READ);
+                        }
+                        final FileChannel in = channels[nextFile];
+                        final long start = nextStart;
+                        final int len = (int) Math.min(blockSize, sizes[nextFile] - start);
+                        inFlight.add(pool.submit(() -> EncodedBlock.encode(HuffmanCompressor.readFully(in, start, len))));
+                        nextStart += len;
+                    }
+
+                    EncodedBlock block = Tasks.await(inFlight.poll());
+                    out.writeInt(block.data.length);
+                    out.write(block.data);
+                    position += 4 + block.data.length;
+                    storedSize += 4 + block.data.length;
+                    // The workers checksum their own blocks, the file's CRC is stitched together here
+                    crc = crc32Combine(crc, block.crc, block.rawLength);
+                    content.update(block.digest);
+                }
+
+                // All blocks of this file are written, so no worker is reading it anymore
+                if (channels[f] != null) {
+                    channels[f].close();
+                    channels[f] = null;
+                }
+                directory.add(new ArchiveEntry(path, entryOffset, sizes[f], storedSize, (int) crc, content.digest(), lastModified[f]));
+            }
+
+            // MARKER: End of Archive
+            out.writeInt(0);
+            position += 4;
+
+            // 4. Central Directory + where it starts
+            out.writeInt(directory.size());
+            for (ArchiveEntry entry : directory) {
+                entry.write(out);
+            }
+            out.writeLong(position);
+        } finally {
+            pool.shutdownNow();
+            for (FileChannel channel : channels) {
+                if (channel != null) channel.close();
+            }
+            if (previous != null) previous.close();
+        }
+    }
+
+    /**
+     * Finds files with the same content as an earlier file (in walk order).
+     * Only files that share their size with another file can be duplicates, so only those are
+     * read: hashed with SHA-256 on the pool, which is collision-safe without comparing bytes.
+     * @return For every file the index of the first file with the same content, or -1
+     */
+    private static int[] findDuplicates(List<File> files, long[] sizes, ForkJoinPool pool) throws IOException {
+        int[] duplicateOf = new int[files.size()];
+        Arrays.fill(duplicateOf, -1);
+
+        // 1. Size prefilter (empty files are never worth it: they have no blocks)
+        Map<Long, Integer> sizeCounts = new HashMap<>();
+        for (long size : sizes) {
+            if (size > 0) sizeCounts.merge(size, 1, Integer::sum);
+        }
+
+        // 2. Hash the candidates concurrently
+        List<Future<byte[]>> hashes = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            final File file = files.get(i);
+            Integer count = sizeCounts.get(sizes[i]);
+            hashes.add(count != null && count > 1 ? pool.submit(() -> sha256(file)) : null);
+        }
+
+        // 3. The first file with a hash owns the content, later ones point at it
+        Map<ByteBuffer, Integer> firstWithHash = new HashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            if (hashes.get(i) == null) continue;
+            ByteBuffer key = ByteBuffer.wrap(Tasks.await(hashes.get(i))); // equals() compares the content
+            Integer first = firstWithHash.putIfAbsent(key, i);
+            if (first != null) duplicateOf[i] = first;
+        }
+        return duplicateOf;
+    }
+
+    /**
+     * Compares the files against the previous archive's directory.
+     * Same size and modification time: unchanged. Same size but a new time (e.g. touched or
+     * checked out again): the file is read once for its content digest on the pool, which is still
+     * far cheaper than compressing it, and kept if the digest matches. (Not the CRC32: 32 bits are
+     * no proof that the content is the same, and a miss would carry stale bytes into the archive.)
+     * @return For every file its entry in the previous archive if it can be copied over, or null
+     */
+    private static ArchiveEntry[] findUnchanged(List<File> files, String[] paths, long[] sizes, long[] lastModified,
+                                                FileChannel previous, int blockSize, ForkJoinPool pool) throws IOException {
+        ArchiveEntry[] unchanged = new ArchiveEntry[files.size()];
+        Unarchiver.ArchiveIndex index = Unarchiver.readIndex(previous);
+        if (index.blockSize != blockSize) {
+            return unchanged; // Blocks of another size can't be copied over, everything is new
+        }
+        Map<String, ArchiveEntry> manifest = new HashMap<>();
+        for (ArchiveEntry entry : index.entries) {
+            // Deduplicated records have no blocks of their own to copy
+            if (entry.storedSize > 0 || entry.size == 0) manifest.put(entry.path, entry);
+        }
+
+        List<Future<byte[]>> checks = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            ArchiveEntry old = manifest.get(paths[i]);
+            Future<byte[]> check = null;
+            if (old != null && old.size == sizes[i]) {
+                if (old.lastModified == lastModified[i]) {
+                    unchanged[i] = old;
+                } else {
+                    final File file = files.get(i);
+                    check = pool.submit(() -> contentDigest(file, blockSize));
+                }
+            }
+            checks.add(check);
+        }
+        for (int i = 0; i < files.size(); i++) {
+            if (checks.get(i) == null) continue;
+            ArchiveEntry old = manifest.get(paths[i]);
+            if (MessageDigest.isEqual(Tasks.await(checks.get(i)), old.digest)) unchanged[i] = old;
+        }
+        return unchanged;
+    }
+
+    /**
+     * The digest kept in the directory: SHA-256 over the SHA-256 of each block (blocks of
+     * 'blockSize' from the start of the file). The writer gets the block hashes from the workers,
+     * so hashing runs as parallel as compressing; only archives with the same block size compare.
+     */
+    private static byte[] contentDigest(File file, int blockSize) throws IOException {
+        MessageDigest content = newSha256();
+        MessageDigest block = newSha256();
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = in.size();
+            for (long position = 0; position < size; position += blockSize) {
+                block.update(HuffmanCompressor.readFully(in, position, (int) Math.min(blockSize, size - position)));
+                content.update(block.digest());
+            }
+        }
+        return content.digest();
+    }
+
+    // Kernel-side copy of [position, position + length) of 'from' to the current end of 'to'
+    private static void copyRange(FileChannel from, long position, long length, FileChannel to) throws IOException {
+        long copied = 0;
+        while (copied < length) {
+            long n = from.transferTo(position + copied, length - copied, to);
+            if (n <= 0) throw new EOFException("Previous archive ends inside the entry at " + position);
+            copied += n;
+        }
+    }
+
+    private static byte[] sha256(File file) throws IOException {
+        MessageDigest digest = newSha256();
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest newSha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e); // Every JVM has to provide SHA-256
+        }
+    }
+
+    // What a worker hands back to the writer
+    private static class EncodedBlock {
+        byte[] data;
+        int rawLength;
+        long crc;
+        byte[] digest; // SHA-256 of the raw bytes
+
+        static EncodedBlock encode(byte[] raw) throws IOException {
+            EncodedBlock block = new EncodedBlock();
+            block.data = BlockCodec.encode(raw, 0, raw.length);
+            block.rawLength = raw.length;
+            CRC32 crc = new CRC32();
+            crc.update(raw, 0, raw.length);
+            block.crc = crc.getValue();
+            block.digest = newSha256().digest(raw);
+            return block;
+        }
+    }
+
+    // zlib's crc32_combine: CRC32 of A+B from crc(A), crc(B) and the length of B,
+    // by applying len2 zero bytes to crc(A) as GF(2) matrix powers
+    static long crc32Combine(long crc1, long crc2, long len2) {
+        if (len2 <= 0) return crc1;
+
+        long[] even = new long[32]; // Operator for an even power of two zero bits
+        long[] odd = new long[32];  // Operator for an odd power of two zero bits
+
+        // One zero bit
+        odd[0] = 0xEDB88320L;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        gf2MatrixSquare(even, odd); // Two zero bits
+        gf2MatrixSquare(odd, even); // Four zero bits
+
+        // Apply len2 zero bytes (the first square gives one zero byte = eight zero bits)
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((len2 & 1) != 0) crc1 = gf2MatrixTimes(even, crc1);
+            len2 >>= 1;
+            if (len2 == 0) break;
+
+            gf2MatrixSquare(odd, even);
+            if ((len2 & 1) != 0) crc1 = gf2MatrixTimes(odd, crc1);
+            len2 >>= 1;
+        } while (len2 != 0);
+
+        return crc1 ^ crc2;
+    }
+
+    private static long gf2MatrixTimes(long[] matrix, long vector) {
+        long sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) sum ^= matrix[i];
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square, long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2MatrixTimes(matrix, matrix[n]);
+        }
+    }
+
+    // Same walk as addDirectoryToArchive, collecting the files instead of writing them
+    private void collectFiles(File currentFile, List<File> files) {
+        if (currentFile.isDirectory()) {
+            File[] children = currentFile.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    collectFiles(child, files);
+                }
+            }
+        } else {
+            files.add(currentFile);
+        }
+    }
+}
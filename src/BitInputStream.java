@@ -1,12 +1,28 @@
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 
 public class BitInputStream implements AutoCloseable{
 
-    private InputStream input;
-    private int currentByte;
-    private int bitsRemaining; // How many bits are left in the current byte
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private InputStream input; // null when reading straight from a byte array
+    private ReadableByteChannel channel; // Used instead of 'input' when reading from a channel
+
+    // --- THE SPEED FIX ---
+    // Bytes come in through one big read() into our own buffer (not one call per byte),
+    // and are moved into a 64-bit bit container up to 8 at a time.
+    private byte[] buffer; // null for a channel, which reads into a direct buffer
+    private ByteBuffer words; // The buffered bytes, also used for 8-byte big-endian loads
+    private int pos;
+    private int limit;
+    private boolean endOfInput;
+
+    // Bit container: the low 'bitCount' bits are unread, the next bit to read is the highest of them
+    private long bitBuffer;
+    private int bitCount;
     
     // We need to know when to stop so we don't read the padding zeros as real data
     private long bytesToRead; 
@@ -15,20 +31,44 @@ public class BitInputStream implements AutoCloseable{
      * Constructor used when starting fresh from a file
      */
     public BitInputStream(String filePath, long bytesToRead) throws IOException {
-        this.input = new FileInputStream(filePath);
-        this.bytesToRead = bytesToRead;
-        this.currentByte = 0;
-        this.bitsRemaining = 0;
+        this(new FileInputStream(filePath), bytesToRead);
     }
 
     /**
      * Constructor used when we have already read the Header
+     * (note: reads ahead, so nothing else should read 'existingStream' afterwards)
      */
     public BitInputStream(InputStream existingStream, long bytesToRead) {
         this.input = existingStream;
         this.bytesToRead = bytesToRead;
-        this.currentByte = 0;
-        this.bitsRemaining = 0;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.words = ByteBuffer.wrap(buffer);
+        this.pos = 0;
+        this.limit = 0;
+    }
+
+    /**
+     * Constructor for a channel already positioned after the Header (closed together with this one).
+     * The bytes land in a direct buffer, so the channel can read without an extra copy.
+     */
+    public BitInputStream(ReadableByteChannel channel, long bytesToRead) {
+        this.channel = channel;
+        this.bytesToRead = bytesToRead;
+        this.words = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.pos = 0;
+        this.limit = 0;
+    }
+
+    /**
+     * Constructor for data that is already in memory: reads data[off..off+len) without copying.
+     */
+    public BitInputStream(byte[] data, int off, int len, long bytesToRead) {
+        this.input = null;
+        this.bytesToRead = bytesToRead;
+        this.buffer = data;
+        this.words = ByteBuffer.wrap(data);
+        this.pos = off;
+        this.limit = off + len;
     }
 
     /**
@@ -39,21 +79,115 @@ public class BitInputStream implements AutoCloseable{
             return -1; 
         }
 
-        // If buffer empty, fetch next byte from disk
-        if (bitsRemaining == 0) {
-            currentByte = input.read();
-            if (currentByte == -1) {
+        // If the bit container is empty, refill it
+        if (bitCount == 0) {
+            fill();
+            if (bitCount == 0) {
                 return -1; // End of file
             }
-            bitsRemaining = 8;
         }
 
         // Extract the Left-Most bit
         // Logic: Shift right to move the target bit to the end, then & 1 to isolate it.
-        int bit = (currentByte >> (bitsRemaining - 1)) & 1;
-        
-        bitsRemaining--;
-        return bit;
+        bitCount--;
+        return (int) (bitBuffer >>> bitCount) & 1;
+    }
+
+    /**
+     * Looks at the next n bits (1-32) without consuming them, first bit in the highest position.
+     * Past the end of the file the missing bits read as zeros, like the padding of the last byte.
+     */
+    public int peekBits(int n) throws IOException {
+        if (bitCount < n) {
+            fill();
+        }
+        long window = (bitCount >= n) ? bitBuffer >>> (bitCount - n) : bitBuffer << (n - bitCount);
+        return (int) (window & ((1L << n) - 1));
+    }
+
+    /**
+     * Drops n bits that were inspected with peekBits().
+     * @return false if the file ended before n bits were available.
+     */
+    public boolean consume(int n) {
+        if (n > bitCount) {
+            bitCount = 0;
+            return false;
+        }
+        bitCount -= n;
+        return true;
+    }
+
+    /**
+     * Reads the next n bits (1-56) as a number, first bit in the highest position.
+     */
+    public long readBits(int n) throws IOException {
+        if (bitCount < n) {
+            fill();
+            if (bitCount < n) {
+                throw new java.io.EOFException("Unexpected End of File while reading " + n + " bits.");
+            }
+        }
+        bitCount -= n;
+        return (bitBuffer >>> bitCount) & ((1L << n) - 1);
+    }
+
+    // Tops up the bit container to at least 57 bits (or whatever is left at the end of the file)
+    private void fill() throws IOException {
+        while (bitCount <= 56) {
+            if (limit - pos < 8 && !refillBuffer()) {
+                // Last few bytes of the input: one at a time
+                if (pos == limit) return;
+                bitBuffer = (bitBuffer << 8) | (words.get(pos++) & 0xFF);
+                bitCount += 8;
+                continue;
+            }
+
+            // Fast path: one 8-byte load, take as many whole bytes as fit
+            int take = (64 - bitCount) >>> 3;
+            long word = words.getLong(pos);
+            bitBuffer = (take == 8) ? word : (bitBuffer << (take * 8)) | (word >>> (64 - take * 8));
+            bitCount += take * 8;
+            pos += take;
+        }
+    }
+
+    // Moves the unread tail to the front and reads more behind it.
+    // Returns true once at least 8 bytes are buffered, false at the end of the input.
+    private boolean refillBuffer() throws IOException {
+        if (channel != null) return refillFromChannel();
+        if (input == null || endOfInput) return false;
+        int remaining = limit - pos;
+        System.arraycopy(buffer, pos, buffer, 0, remaining);
+        pos = 0;
+        limit = remaining;
+        while (limit < 8) {
+            int n = input.read(buffer, limit, buffer.length - limit);
+            if (n < 0) {
+                endOfInput = true;
+                return false;
+            }
+            limit += n;
+        }
+        return true;
+    }
+
+    private boolean refillFromChannel() throws IOException {
+        if (endOfInput) return false;
+        words.limit(limit).position(pos);
+        words.compact(); // Tail to the front, position = end of the data, limit = capacity
+        try {
+            while (words.position() < 8) {
+                if (channel.read(words) < 0) {
+                    endOfInput = true;
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            limit = words.position();
+            pos = 0;
+        }
     }
 
     /**
@@ -64,6 +198,7 @@ public class BitInputStream implements AutoCloseable{
     }
 
     public void close() throws IOException {
-        input.close();
+        if (input != null) input.close();
+        if (channel != null) channel.close();
     }
-}
\ No newline at end of file
+}
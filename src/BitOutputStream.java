@@ -1,33 +1,49 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 public class BitOutputStream implements AutoCloseable {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private OutputStream output; // Change type to generic OutputStream
-    private int currentByte;
-    private int bitsCount;
+    private WritableByteChannel channel; // Used instead of 'output' when writing to a channel
+
+    // --- THE SPEED FIX (v2) ---
+    // Bits are collected in a 64-bit accumulator and flushed as whole words
+    // into our own buffer, which goes to the OutputStream (or channel) in one call.
+    private long bitBuffer;   // Pending bits, right-aligned
+    private int bitsCount;    // How many bits of bitBuffer are pending (0-63)
+    private final ByteBuffer buffer;
 
     public BitOutputStream(String filePath, boolean append) throws IOException {
-        // --- THE SPEED FIX ---
-        // Wrap FileOutputStream in BufferedOutputStream
-        this.output = new BufferedOutputStream(new FileOutputStream(filePath, append)); 
-        
-        this.currentByte = 0;
+        this(new FileOutputStream(filePath, append));
+    }
+
+    /**
+     * Writes the bits into an already open stream (closed together with this one).
+     */
+    public BitOutputStream(OutputStream output) {
+        this.output = output;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.bitBuffer = 0;
         this.bitsCount = 0;
     }
 
-    // ... (Keep writeBit and writeCode exactly the same) ...
+    /**
+     * Writes the bits into an already open channel (closed together with this one),
+     * at its current position. A direct buffer lets the channel write it without an extra copy.
+     */
+    public BitOutputStream(WritableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.bitBuffer = 0;
+        this.bitsCount = 0;
+    }
 
     public void writeBit(int bit) throws IOException {
-        // (Same logic as before)
         if (bit != 0 && bit != 1) throw new IllegalArgumentException("Bit must be 0 or 1");
-        currentByte = currentByte << 1;
-        if (bit == 1) currentByte = currentByte | 1;
-        bitsCount++;
-        if (bitsCount == 8) {
-            output.write(currentByte);
-            currentByte = 0;
-            bitsCount = 0;
-        }
+        writeBits(bit, 1);
     }
     
     public void writeCode(String code) throws IOException {
@@ -36,15 +52,67 @@ public class BitOutputStream implements AutoCloseable {
         }
     }
 
+    /**
+     * Writes the lowest 'len' bits of 'bits' (1-64), most significant first.
+     */
+    public void writeBits(long bits, int len) throws IOException {
+        if (len < 64) {
+            bits &= (1L << len) - 1;
+        }
+
+        int free = 64 - bitsCount;
+        if (len < free) {
+            bitBuffer = (bitBuffer << len) | bits;
+            bitsCount += len;
+            return;
+        }
+
+        // Fill the accumulator up to a full word, flush it, keep the rest
+        int rest = len - free;
+        long word = (free == 64) ? bits : (bitBuffer << free) | (bits >>> rest);
+        writeWord(word);
+        bitBuffer = bits; // Only the low 'rest' bits matter from here on
+        bitsCount = rest;
+    }
+
+    private void writeWord(long word) throws IOException {
+        if (buffer.remaining() < 8) {
+            flushBuffer();
+        }
+        buffer.putLong(word); // Big-endian, so the first bit ends up in the first byte
+    }
+
+    private void flushBuffer() throws IOException {
+        if (channel != null) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } else {
+            output.write(buffer.array(), 0, buffer.position());
+        }
+        buffer.clear();
+    }
+
     public void close() throws IOException {
-        if (bitsCount > 0) {
-            int padding = 8 - bitsCount;
-            currentByte = currentByte << padding;
-            output.write(currentByte);
+        // Write out the pending bits, padding the last byte with zeros
+        if (buffer.remaining() < 8) {
+            flushBuffer();
         }
+        while (bitsCount > 0) {
+            int shift = bitsCount - 8;
+            int b = (int) (shift >= 0 ? bitBuffer >>> shift : bitBuffer << -shift);
+            buffer.put((byte) b);
+            bitsCount = Math.max(0, shift);
+        }
+        flushBuffer();
         
+        if (channel != null) {
+            channel.close();
+            return;
+        }
         // FLUSHING IS CRITICAL WITH BUFFERS
         output.flush(); 
         output.close();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,81 @@
+import java.io.*;
+
+/**
+ * Encodes / decodes one self-contained block of data.
+ * Every block carries its own code table, so blocks can be processed
+ * independently (and therefore in parallel).
+ *
+ * Block layout: [byte mode][payload]
+ *   MODE_HUFFMAN: [packed canonical code lengths][body, padded to a full byte]
+ *   MODE_STORED:  [raw bytes] (used when Huffman would not make the block smaller)
+ */
+public class BlockCodec {
+
+    public static final int MODE_HUFFMAN = 1;
+    public static final int MODE_STORED = 2;
+
+    /**
+     * Compresses data[off..off+len) into a new block.
+     */
+    public static byte[] encode(byte[] data, int off, int len) throws IOException {
+        // 1. Analyze Block
+        int[] frequencies = new int[256];
+        FrequencyCounter.count(data, off, len, frequencies);
+        HuffmanNode root = HuffmanTree.buildTree(frequencies);
+        int[] lengths = HuffmanTree.limitCodeLengths(
+                HuffmanTree.generateCodeLengths(root), CodeTable.MAX_CODE_LENGTH);
+        CodeTable codes = HuffmanTree.generateCanonicalCodes(lengths);
+        long[] codeBits = codes.codes;
+        int[] codeLengths = codes.lengths;
+
+        // 2. Write Header + Body into memory
+        ByteArrayOutputStream block = new ByteArrayOutputStream(len / 2 + 64);
+        DataOutputStream dos = new DataOutputStream(block);
+        dos.writeByte(MODE_HUFFMAN);
+        CodeTable.writeCodeLengths(dos, lengths);
+        try (BitOutputStream bos = new BitOutputStream(block)) {
+            for (int i = off; i < off + len; i++) {
+                int b = data[i] & 0xFF;
+                bos.writeBits(codeBits[b], codeLengths[b]);
+            }
+        }
+
+        // 3. Incompressible data: store it as is
+        if (block.size() > len) {
+            byte[] stored = new byte[len + 1];
+            stored[0] = MODE_STORED;
+            System.arraycopy(data, off, stored, 1, len);
+            return stored;
+        }
+        return block.toByteArray();
+    }
+
+    /**
+     * Restores a block into dst[dstOff..dstOff+rawLength).
+     */
+    public static void decode(byte[] block, int off, int len, byte[] dst, int dstOff, int rawLength) throws IOException {
+        if (len < 1) throw new IOException("Corrupt data: empty block.");
+        int mode = block[off];
+
+        if (mode == MODE_STORED) {
+            if (len - 1 != rawLength) throw new IOException("Corrupt data: stored block size mismatch.");
+            System.arraycopy(block, off + 1, dst, dstOff, rawLength);
+            return;
+        }
+        if (mode != MODE_HUFFMAN) {
+            throw new IOException("Corrupt data: unknown block mode " + mode);
+        }
+
+        ByteArrayInputStream header = new ByteArrayInputStream(block, off + 1, len - 1);
+        HuffmanDecoder decoder = HuffmanDecoder.fromCodeLengths(CodeTable.readCodeLengths(new DataInputStream(header)));
+
+        // The body is decoded straight out of the block array (no copy)
+        int bodyOff = off + len - header.available();
+        try (BitInputStream bis = new BitInputStream(block, bodyOff, off + len - bodyOff, rawLength)) {
+            int decoded = decoder.decode(bis, dst, dstOff, rawLength);
+            if (decoded != rawLength) {
+                throw new IOException("Corrupt data: block ended after " + decoded + " of " + rawLength + " bytes.");
+            }
+        }
+    }
+}
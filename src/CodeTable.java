@@ -0,0 +1,101 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Packed form of the Huffman codes: one integer + bit length per byte value.
+ * This is what the encoder uses on the hot path (the String[] codes are only for display).
+ */
+public class CodeTable {
+
+    // Longest code allowed in canonical mode; lengths are stored as 4-bit values
+    public static final int MAX_CODE_LENGTH = 15;
+
+    public final long[] codes;   // Code bits, right-aligned (e.g. "110" -> 0b110)
+    public final int[] lengths;  // Code length in bits, 0 if the byte never appears
+
+    public CodeTable(long[] codes, int[] lengths) {
+        this.codes = codes;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Writes the code lengths of a canonical code in packed form:
+     * [short count][used symbols][4-bit lengths, two per byte].
+     * Few symbols are listed by value, otherwise a 256-bit presence map is cheaper.
+     */
+    public static void writeCodeLengths(DataOutputStream out, int[] lengths) throws IOException {
+        int count = 0;
+        for (int len : lengths) {
+            if (len > 0) count++;
+        }
+        out.writeShort(count);
+
+        if (count < 32) {
+            for (int s = 0; s < 256; s++) {
+                if (lengths[s] > 0) out.writeByte(s);
+            }
+        } else {
+            for (int s = 0; s < 256; s += 8) {
+                int bits = 0;
+                for (int i = 0; i < 8; i++) {
+                    if (lengths[s + i] > 0) bits |= 0x80 >>> i;
+                }
+                out.writeByte(bits);
+            }
+        }
+
+        int pending = -1;
+        for (int s = 0; s < 256; s++) {
+            if (lengths[s] == 0) continue;
+            if (pending < 0) {
+                pending = lengths[s] << 4;
+            } else {
+                out.writeByte(pending | lengths[s]);
+                pending = -1;
+            }
+        }
+        if (pending >= 0) out.writeByte(pending);
+    }
+
+    /**
+     * Reads code lengths written by writeCodeLengths and checks they form a valid prefix code.
+     */
+    public static int[] readCodeLengths(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        if (count > 256) throw new IOException("Corrupt header: " + count + " symbols.");
+
+        int[] symbols = new int[count];
+        if (count < 32) {
+            for (int i = 0; i < count; i++) {
+                symbols[i] = in.readUnsignedByte();
+            }
+        } else {
+            int n = 0;
+            for (int s = 0; s < 256; s += 8) {
+                int bits = in.readUnsignedByte();
+                for (int i = 0; i < 8; i++) {
+                    if ((bits & (0x80 >>> i)) != 0) {
+                        if (n == count) throw new IOException("Corrupt header: symbol map.");
+                        symbols[n++] = s + i;
+                    }
+                }
+            }
+            if (n != count) throw new IOException("Corrupt header: symbol map.");
+        }
+
+        int[] lengths = new int[256];
+        long kraft = 0;
+        for (int i = 0; i < count; i += 2) {
+            int packed = in.readUnsignedByte();
+            lengths[symbols[i]] = packed >>> 4;
+            if (i + 1 < count) lengths[symbols[i + 1]] = packed & 0xF;
+        }
+        for (int s : symbols) {
+            if (lengths[s] == 0) throw new IOException("Corrupt header: zero code length.");
+            kraft += 1L << (MAX_CODE_LENGTH - lengths[s]);
+        }
+        if (kraft > (1L << MAX_CODE_LENGTH)) throw new IOException("Corrupt header: invalid code lengths.");
+        return lengths;
+    }
+}
\ No newline at end of file
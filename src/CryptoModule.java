@@ -1,96 +1,432 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import javax.crypto.AEADBadTagException;
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
-import javax.crypto.CipherOutputStream;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
 
+/**
+ * AES-256 file encryption.
+ *
+ * Files are written in a chunked AES-GCM format:
+ *   [magic "HENC"][byte version][int chunkSize][16-byte fileId][int iterations][16-byte salt]
+ *   then one record per chunk: [12-byte nonce][ciphertext + 16-byte tag]
+ * The key is derived from the password with PBKDF2 (salt and iteration count from the header).
+ * Derived keys are kept in a small expiring cache, and files encrypted in the same session share
+ * a salt, so a batch of thousands of files under one password costs a single derivation.
+ * Every chunk but the last holds exactly chunkSize bytes, so chunk i starts at a known offset.
+ * Each chunk has its own random nonce and is authenticated together with the fileId, its index
+ * and whether it is the last one, so chunks can't be swapped between files, reordered or cut off.
+ * Chunks are independent: they are encrypted and decrypted on all cores, and a single one can be
+ * verified or decrypted without reading the rest of the file.
+ *
+ * Files from older versions (AES/CBC with the IV first and no magic) can still be decrypted:
+ * their key is the plain SHA-256 of the password.
+ */
 public class CryptoModule {
 
     private static final String ALGORITHM = "AES";
-    private static final String TRANSFORMATION = "AES/CBC/PKCS5Padding";
+    private static final String TRANSFORMATION = "AES/CBC/PKCS5Padding"; // Legacy files only
+    private static final String GCM_TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private static final String KDF = "PBKDF2WithHmacSHA256";
+
+    private static final byte[] MAGIC = {'H', 'E', 'N', 'C'};
+    private static final int VERSION = 2;                 // PBKDF2 key, salt in the header
+    private static final int CHUNK_SIZE = 1 << 20;        // 1 MB of plaintext per chunk
+    private static final int MAX_CHUNK_SIZE = 64 << 20;   // Sanity limit when reading a header
+    private static final int FILE_ID_LENGTH = 16;
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_LENGTH = 16;
+    private static final int SLICE = 16 * 1024;            // Cipher.update() step, see crypt()
+    private static final int SALT_LENGTH = 16;
+    private static final int ITERATIONS = 600_000;         // PBKDF2-HMAC-SHA256, as recommended by OWASP
+    private static final int MAX_ITERATIONS = 10_000_000;  // Sanity limit when reading a header
+    private static final int HEADER_LENGTH = MAGIC.length + 1 + 4 + FILE_ID_LENGTH + 4 + SALT_LENGTH;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final KeyCache KEYS = new KeyCache(64, 15 * 60 * 1000L); // 64 keys, 15 minutes
+
+    // What the header of a chunked file tells us
+    private static class ChunkedHeader {
+        int chunkSize;
+        byte[] fileId;
+        int iterations;
+        byte[] salt;
+
+        int recordSize() {
+            return NONCE_LENGTH + chunkSize + TAG_LENGTH;
+        }
+    }
 
     /**
-     * Encrypts a file using AES-256.
-     * Generates a random Initialization Vector (IV), writes it to the start of the file,
-     * and then writes the encrypted data.
+     * Encrypts a file using AES-256 (chunked AES-GCM, see above).
      */
     public static void encrypt(File inputFile, File outputFile, String password) throws Exception {
-        // 1. Generate Key from Password
-        SecretKeySpec key = generateKey(password);
+        try (InputStream in = new FileInputStream(inputFile)) {
+            encrypt(in, new FileOutputStream(outputFile), password);
+        } catch (Exception e) {
+            outputFile.delete(); // Don't leave half a file behind
+            throw e;
+        }
+    }
 
-        // 2. Generate Random IV (Initialization Vector)
-        // This ensures that encrypting the same file twice produces different results.
-        byte[] iv = new byte[16];
-        new SecureRandom().nextBytes(iv);
-        IvParameterSpec ivSpec = new IvParameterSpec(iv);
+    /**
+     * Same as encrypt(File, File, String), for streams (e.g. the last stage of a Pipeline).
+     * Closes 'out' when done.
+     */
+    public static void encrypt(InputStream in, OutputStream out, String password) throws Exception {
+        // 1. Derive the Key from the Password (the session's salt: a batch shares one derivation)
+        String handle = KEYS.handle(password);
+        byte[] salt = KEYS.sessionSalt(handle, SALT_LENGTH);
+        SecretKeySpec key = deriveKey(password, handle, salt, ITERATIONS);
 
-        // 3. Initialize Cipher
-        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-        cipher.init(Cipher.ENCRYPT_MODE, key, ivSpec);
-
-        // 4. Write Streams
-        try (FileInputStream fis = new FileInputStream(inputFile);
-             FileOutputStream fos = new FileOutputStream(outputFile)) {
-            
-            // A. Write the IV unencrypted at the start of the file
-            fos.write(iv);
-
-            // B. Write the encrypted body
-            try (CipherOutputStream cos = new CipherOutputStream(fos, cipher)) {
-                byte[] buffer = new byte[4096];
-                int bytesRead;
-                while ((bytesRead = fis.read(buffer)) != -1) {
-                    cos.write(buffer, 0, bytesRead);
+        // 2. Random file id: binds every chunk to this file
+        byte[] fileId = new byte[FILE_ID_LENGTH];
+        RANDOM.nextBytes(fileId);
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (OutputStream fos = out) {
+            // A. Header
+            DataOutputStream dos = new DataOutputStream(fos);
+            dos.write(MAGIC);
+            dos.writeByte(VERSION);
+            dos.writeInt(CHUNK_SIZE);
+            dos.write(fileId);
+            dos.writeInt(ITERATIONS);
+            dos.write(salt);
+
+            // B. Chunks: a bounded window is sealed in parallel, records are written in order.
+            // We read one chunk ahead to know which one is the last (an empty input is one empty chunk).
+            ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>();
+            int window = threads * 2;
+            byte[] chunk = readChunk(in, CHUNK_SIZE);
+            for (long index = 0; ; index++) {
+                byte[] next = (chunk.length == CHUNK_SIZE) ? readChunk(in, CHUNK_SIZE) : null;
+                final boolean last = next == null || next.length == 0;
+                final byte[] plain = chunk;
+                final long chunkIndex = index;
+                inFlight.add(pool.submit(() -> sealChunk(key, fileId, chunkIndex, last, plain)));
+                if (inFlight.size() >= window) {
+                    fos.write(Tasks.await(inFlight.poll()));
                 }
+                if (last) break;
+                chunk = next;
             }
+            while (!inFlight.isEmpty()) {
+                fos.write(Tasks.await(inFlight.poll()));
+            }
+        } finally {
+            pool.shutdownNow();
         }
     }
 
     /**
-     * Decrypts an AES-256 encrypted file.
-     * Reads the IV from the start of the file, then decrypts the rest.
+     * Decrypts an AES-256 encrypted file (chunked AES-GCM, or the older CBC format).
+     * A wrong password or any modified chunk is reported as an IOException.
      */
     public static void decrypt(File inputFile, File outputFile, String password) throws Exception {
-        // 1. Generate Key from Password
-        SecretKeySpec key = generateKey(password);
-
-        try (FileInputStream fis = new FileInputStream(inputFile)) {
-            // 2. Read the IV (First 16 bytes)
-            byte[] iv = new byte[16];
-            int ivRead = fis.read(iv);
-            if (ivRead < 16) {
-                throw new IOException("File is too short or corrupted (Missing IV).");
+        try (InputStream in = new FileInputStream(inputFile)) {
+            decrypt(in, new FileOutputStream(outputFile), password);
+        } catch (Exception e) {
+            outputFile.delete(); // Wrong password or damaged file: no empty or half-decrypted file
+            throw e;
+        }
+    }
+
+    /**
+     * Same as decrypt(File, File, String), for streams (e.g. the first stage of a Pipeline).
+     * Closes 'out' when done.
+     */
+    public static void decrypt(InputStream in, OutputStream out, String password) throws Exception {
+        try (InputStream fis = in; OutputStream fos = out) {
+            // 1. The first 16 bytes are either the start of a chunked header or a legacy IV
+            byte[] start = new byte[16];
+            try {
+                new DataInputStream(fis).readFully(start);
+            } catch (EOFException e) {
+                throw new IOException("File is too short or corrupted (Missing header).");
+            }
+
+            // 2. Get the Key (from the cache if this password and salt were seen before), then decrypt
+            if (hasMagic(start)) {
+                byte[] header = Arrays.copyOf(start, HEADER_LENGTH);
+                try {
+                    new DataInputStream(fis).readFully(header, start.length, header.length - start.length);
+                } catch (EOFException e) {
+                    throw new IOException("File is too short or corrupted (Missing header).");
+                }
+                ChunkedHeader chunked = parseHeader(header);
+                decryptChunks(fis, fos, keyFor(chunked, password), chunked);
+            } else {
+                decryptLegacy(fis, fos, generateKey(password), start);
             }
-            IvParameterSpec ivSpec = new IvParameterSpec(iv);
-
-            // 3. Initialize Cipher
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.DECRYPT_MODE, key, ivSpec);
-
-            // 4. Decrypt and Write
-            try (CipherInputStream cis = new CipherInputStream(fis, cipher);
-                 FileOutputStream fos = new FileOutputStream(outputFile)) {
-                
-                byte[] buffer = new byte[4096];
-                int bytesRead;
-                while ((bytesRead = cis.read(buffer)) != -1) {
-                    fos.write(buffer, 0, bytesRead);
+        }
+    }
+
+    /**
+     * Decrypts chunk 'index' of an encrypted file on its own, reading only that chunk.
+     * @throws IOException if the password is wrong, the chunk was modified or there is no such chunk
+     */
+    public static byte[] decryptChunk(File inputFile, String password, long index) throws Exception {
+        try {
+            return openChunkAt(inputFile, password, index);
+        } catch (AEADBadTagException e) {
+            throw new IOException("Wrong password or corrupted data (chunk " + index + ").");
+        }
+    }
+
+    /**
+     * Checks chunk 'index' of an encrypted file without decrypting anything else.
+     * @return false if the password is wrong or the chunk was modified
+     */
+    public static boolean verifyChunk(File inputFile, String password, long index) throws Exception {
+        try {
+            openChunkAt(inputFile, password, index);
+            return true;
+        } catch (AEADBadTagException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Number of chunks in a (chunked) encrypted file.
+     */
+    public static long chunkCount(File inputFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ)) {
+            ChunkedHeader header = readHeader(channel);
+            long body = channel.size() - HEADER_LENGTH;
+            return Math.max(1, (body + header.recordSize() - 1) / header.recordSize());
+        }
+    }
+
+    // --- Chunked format ---
+
+    // Decrypts the records following the header: a bounded window is opened in parallel, written in order
+    private static void decryptChunks(InputStream in, OutputStream out, SecretKeySpec key, ChunkedHeader header) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>();
+            int window = threads * 2;
+            int recordSize = header.recordSize();
+            byte[] record = readChunk(in, recordSize);
+            for (long index = 0; ; index++) {
+                if (record.length < NONCE_LENGTH + TAG_LENGTH) {
+                    throw new IOException("File is truncated or corrupted (chunk " + index + ").");
+                }
+                // Only a short record, or a full one followed by the end of the file, may be the last
+                byte[] next = (record.length == recordSize) ? readChunk(in, recordSize) : null;
+                final boolean last = next == null || next.length == 0;
+                final byte[] sealed = record;
+                final long chunkIndex = index;
+                inFlight.add(pool.submit(() -> {
+                    try {
+                        return openChunk(key, header.fileId, chunkIndex, last, sealed, 0, sealed.length);
+                    } catch (AEADBadTagException e) {
+                        throw new IOException("Wrong password or corrupted data (chunk " + chunkIndex + ").");
+                    }
+                }));
+                if (inFlight.size() >= window) {
+                    out.write(Tasks.await(inFlight.poll()));
                 }
+                if (last) break;
+                record = next;
+            }
+            while (!inFlight.isEmpty()) {
+                out.write(Tasks.await(inFlight.poll()));
             }
+        } finally {
+            pool.shutdownNow();
         }
     }
 
+    // Random access: reads and opens one record, straight from its offset
+    private static byte[] openChunkAt(File inputFile, String password, long index) throws IOException, GeneralSecurityException {
+        try (FileChannel channel = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ)) {
+            ChunkedHeader header = readHeader(channel);
+            long size = channel.size();
+            long offset = HEADER_LENGTH + index * header.recordSize();
+            if (index < 0 || offset >= size) {
+                throw new IOException("No chunk " + index + " in " + inputFile.getName());
+            }
+            int length = (int) Math.min(header.recordSize(), size - offset);
+            if (length < NONCE_LENGTH + TAG_LENGTH) {
+                throw new IOException("File is truncated or corrupted (chunk " + index + ").");
+            }
+            boolean last = offset + length == size;
+            byte[] record = HuffmanCompressor.readFully(channel, offset, length);
+            return openChunk(keyFor(header, password), header.fileId, index, last, record, 0, length);
+        }
+    }
+
+    // Record: [nonce][ciphertext + tag]
+    private static byte[] sealChunk(SecretKeySpec key, byte[] fileId, long index, boolean last, byte[] plain) throws IOException {
+        try {
+            byte[] nonce = new byte[NONCE_LENGTH];
+            RANDOM.nextBytes(nonce);
+            Cipher cipher = Cipher.getInstance(GCM_TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+            cipher.updateAAD(chunkAad(fileId, index, last));
+
+            byte[] record = new byte[NONCE_LENGTH + plain.length + TAG_LENGTH];
+            System.arraycopy(nonce, 0, record, 0, NONCE_LENGTH);
+            crypt(cipher, plain, 0, plain.length, record, NONCE_LENGTH);
+            return record;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Encryption failed: " + e.getMessage(), e);
+        }
+    }
+
+    // Throws AEADBadTagException if the chunk does not authenticate (wrong key, modified, moved or cut off)
+    private static byte[] openChunk(SecretKeySpec key, byte[] fileId, long index, boolean last,
+                                    byte[] record, int off, int len) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(GCM_TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, record, off, NONCE_LENGTH));
+        cipher.updateAAD(chunkAad(fileId, index, last));
+        byte[] plain = new byte[len - NONCE_LENGTH - TAG_LENGTH];
+        crypt(cipher, record, off + NONCE_LENGTH, len - NONCE_LENGTH, plain, 0);
+        return plain;
+    }
+
+    // Runs a whole chunk through the cipher in SLICE steps: one huge doFinal() call is executed
+    // by the interpreter and never reaches the JIT's AES/GHASH intrinsics, small steps do (~20x faster)
+    private static void crypt(Cipher cipher, byte[] input, int off, int len, byte[] output, int outOff) throws GeneralSecurityException {
+        int end = off + len;
+        while (end - off > SLICE) {
+            outOff += cipher.update(input, off, SLICE, output, outOff);
+            off += SLICE;
+        }
+        cipher.doFinal(input, off, end - off, output, outOff);
+    }
+
+    // Additional authenticated data: [fileId][long index][byte last]
+    private static byte[] chunkAad(byte[] fileId, long index, boolean last) {
+        return ByteBuffer.allocate(FILE_ID_LENGTH + 8 + 1)
+                .put(fileId)
+                .putLong(index)
+                .put((byte) (last ? 1 : 0))
+                .array();
+    }
+
+    private static boolean hasMagic(byte[] start) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (start[i] != MAGIC[i]) return false;
+        }
+        return start[MAGIC.length] == VERSION;
+    }
+
+    private static ChunkedHeader readHeader(FileChannel channel) throws IOException {
+        byte[] start = HuffmanCompressor.readFully(channel, 0, (int) Math.min(HEADER_LENGTH, channel.size()));
+        if (start.length < MAGIC.length + 1 || !hasMagic(start)) {
+            throw new IOException("Not a chunked encrypted file (older CBC files must be decrypted as a whole).");
+        }
+        if (start.length < HEADER_LENGTH) {
+            throw new IOException("File is too short or corrupted (Missing header).");
+        }
+        return parseHeader(start);
+    }
+
+    private static ChunkedHeader parseHeader(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(MAGIC.length);
+        ChunkedHeader header = new ChunkedHeader();
+        buffer.get(); // Version, checked by hasMagic()
+        header.chunkSize = buffer.getInt();
+        if (header.chunkSize <= 0 || header.chunkSize > MAX_CHUNK_SIZE) {
+            throw new IOException("Corrupted file: bad chunk size " + header.chunkSize);
+        }
+        header.fileId = new byte[FILE_ID_LENGTH];
+        buffer.get(header.fileId);
+        header.iterations = buffer.getInt();
+        if (header.iterations <= 0 || header.iterations > MAX_ITERATIONS) {
+            throw new IOException("Corrupted file: bad iteration count " + header.iterations);
+        }
+        header.salt = new byte[SALT_LENGTH];
+        buffer.get(header.salt);
+        return header;
+    }
+
+    // Reads up to 'size' bytes (fewer only at the end of the stream, empty at the end)
+    private static byte[] readChunk(InputStream in, int size) throws IOException {
+        byte[] buffer = new byte[size];
+        int filled = 0;
+        int n;
+        while (filled < size && (n = in.read(buffer, filled, size - filled)) != -1) {
+            filled += n;
+        }
+        return (filled == size) ? buffer : Arrays.copyOf(buffer, filled);
+    }
+
+    // --- Legacy format ---
+
+    // [16-byte IV][AES/CBC body], the IV has already been read
+    private static void decryptLegacy(InputStream in, OutputStream out, SecretKeySpec key, byte[] iv) throws Exception {
+        IvParameterSpec ivSpec = new IvParameterSpec(iv);
+
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, key, ivSpec);
+
+        CipherInputStream cis = new CipherInputStream(in, cipher);
+        byte[] buffer = new byte[64 * 1024];
+        int bytesRead;
+        while ((bytesRead = cis.read(buffer)) != -1) {
+            out.write(buffer, 0, bytesRead);
+        }
+    }
+
+    // --- Keys ---
+
+    /**
+     * Forgets all cached keys (e.g. when a batch is done). The next file pays for a derivation again.
+     */
+    public static void clearKeyCache() {
+        KEYS.clear();
+    }
+
+    private static SecretKeySpec keyFor(ChunkedHeader header, String password) throws GeneralSecurityException {
+        return deriveKey(password, KEYS.handle(password), header.salt, header.iterations);
+    }
+
+    /**
+     * Turns the password into a 256-bit AES Key with PBKDF2 (salted and slow on purpose),
+     * or takes it from the cache if this password, salt and iteration count were seen before.
+     */
+    private static SecretKeySpec deriveKey(String password, String handle, byte[] salt, int iterations) throws GeneralSecurityException {
+        return KEYS.get(handle, salt, iterations, () -> {
+            PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, 256);
+            try {
+                byte[] key = SecretKeyFactory.getInstance(KDF).generateSecret(spec).getEncoded();
+                return new SecretKeySpec(key, ALGORITHM);
+            } finally {
+                spec.clearPassword();
+            }
+        });
+    }
+
     /**
-     * Helper: Turns a simple text password (e.g., "1234") into a secure 256-bit AES Key.
+     * Helper: Turns a simple text password (e.g., "1234") into a 256-bit AES Key.
+     * Only for files from older versions (CBC): new files use deriveKey().
      */
-    private static SecretKeySpec generateKey(String password) throws Exception {
+    private static SecretKeySpec generateKey(String password) throws IOException, GeneralSecurityException {
         MessageDigest sha = MessageDigest.getInstance("SHA-256");
         byte[] key = password.getBytes("UTF-8");
         key = sha.digest(key); // Hash the password
         // Use the full 32 bytes (256 bits) for AES-256
         return new SecretKeySpec(key, ALGORITHM);
     }
-}
\ No newline at end of file
+}
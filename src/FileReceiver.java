@@ -0,0 +1,542 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Receiving end of NetworkModule transfers, serving many uploads at once.
+ *
+ * One thread accepts connections and hands each one to a worker thread, which reads the header
+ * and moves the body straight from the socket into the file with FileChannel.transferFrom
+ * (or, for compressed transfers, decodes each block as it arrives and writes it out).
+ * Resumable transfers are collected in a ".part" file that only ever holds verified chunks,
+ * and renamed once complete, so an interrupted one can go on where it stopped.
+ * Parallel transfers arrive over several connections at once: the first one preallocates the
+ * ".part" file, every connection writes its own byte range into it, the last one renames it.
+ * One that no connection has worked on for twice the read timeout (a stream never came) is dropped.
+ * Everything that happens is reported to a TransferListener, so no transfer ever waits for a user.
+ * A sender that goes quiet for longer than the read timeout is dropped, so stalled connections
+ * can't use up the workers: the body is read from the raw channel, which has no timeout of its own,
+ * so every read marks the connection active and the sweeper closes the ones that have gone quiet.
+ *
+ * Wire format (see NetworkModule):
+ *   plain:   [UTF fileName][long size][size bytes]
+ *   other:   [int MAGIC][byte mode][UTF fileName][long size][body of that mode]
+ */
+public class FileReceiver implements Closeable {
+
+    public static final int MAX_CONNECTIONS = 64; // Served at once, the rest wait to be picked up
+    private static final int MAX_CHUNK_SIZE = 64 << 20; // Sanity limit for a sender's chunk size
+    public static final int DEFAULT_READ_TIMEOUT_MS = 60_000;
+    private static final long SWEEP_INTERVAL_MS = 1000; // How often quiet connections and idle parallel transfers are looked for
+
+    private final File saveDir;
+    private final TransferListener listener;
+    private final ServerSocketChannel server;
+    private final ExecutorService workers;
+    private final Thread acceptor;
+    private final ScheduledExecutorService sweeper;
+    private volatile boolean closed;
+    private volatile int readTimeout = DEFAULT_READ_TIMEOUT_MS;
+
+    // Parallel transfers in progress, by transfer id (guarded by itself)
+    private final Map<Long, ParallelFile> parallelFiles = new HashMap<>();
+
+    // Connections being served, watched for senders that stopped sending
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+
+    // The socket as the transfers read it: every read counts as a sign of life
+    private static class Connection implements ReadableByteChannel {
+        final SocketChannel channel;
+        final long timeout;      // Nanos without a read before the sweeper closes it
+        volatile long lastRead = System.nanoTime();
+        volatile boolean timedOut;
+
+        Connection(SocketChannel channel, long timeout) {
+            this.channel = channel;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int n = channel.read(dst);
+            lastRead = System.nanoTime();
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // One file arriving over several connections
+    private static class ParallelFile {
+        final File target;
+        final File part;
+        final long size;
+        final long modified;
+        final int streams;
+        final RandomAccessFile file;
+        final long idleLimit;    // Nanos without a connected stream before it is dropped
+        final long started = System.nanoTime();
+        final BitSet joined = new BitSet();   // Stream ids that have connected, each may only once
+        final BitSet finished = new BitSet(); // Stream ids whose range is written
+        int active;              // Streams connected right now
+        long idleSince = started;
+        boolean failed;
+
+        ParallelFile(File target, File part, long size, long modified, int streams, long idleLimit) throws IOException {
+            this.target = target;
+            this.part = part;
+            this.size = size;
+            this.modified = modified;
+            this.streams = streams;
+            this.idleLimit = idleLimit;
+            this.file = new RandomAccessFile(part, "rw");
+            file.setLength(size); // Preallocate: every stream writes at its own offset
+        }
+    }
+
+    /**
+     * Starts listening on 'port' (0 = any free port, see getPort()) and saving files into 'saveDir'.
+     */
+    public FileReceiver(int port, File saveDir, TransferListener listener) throws IOException {
+        this.saveDir = saveDir;
+        this.listener = listener;
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(MAX_CONNECTIONS, task -> {
+            Thread thread = new Thread(task, "receiver-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "receiver-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        this.acceptor = new Thread(this::acceptLoop, "receiver-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        listener.serverStarted(getPort());
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * How long a connection may go without receiving anything before it fails (for connections
+     * accepted from now on).
+     */
+    public void setReadTimeout(int millis) {
+        if (millis <= 0) throw new IllegalArgumentException("Read timeout must be positive: " + millis);
+        readTimeout = millis;
+    }
+
+    /**
+     * Blocks until the receiver is closed.
+     */
+    public void awaitTermination() throws InterruptedException {
+        acceptor.join();
+    }
+
+    /**
+     * Stops accepting connections and aborts the transfers in progress
+     * (unfinished parallel transfers are deleted).
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        workers.shutdownNow();
+        sweeper.shutdownNow();
+        List<ParallelFile> unfinished;
+        synchronized (parallelFiles) {
+            unfinished = new ArrayList<>(parallelFiles.values());
+        }
+        for (ParallelFile file : unfinished) {
+            failParallel(file);
+        }
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            SocketChannel socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                if (!closed) listener.transferFailed(null, e);
+                return;
+            }
+            listener.connectionAccepted(socket.socket().getRemoteSocketAddress());
+            workers.execute(() -> serve(socket));
+        }
+    }
+
+    // One connection, one file
+    private void serve(SocketChannel socket) {
+        String name = null;
+        int timeout = readTimeout;
+        Connection input = new Connection(socket, TimeUnit.MILLISECONDS.toNanos(timeout));
+        connections.add(input);
+        try (SocketChannel channel = socket) {
+            // 1. Header: a plain transfer starts right away with the name, other modes with MAGIC.
+            // Read unbuffered, so the body is still all in the channel afterwards (the name and size
+            // take the 4 bytes pushed back, whatever the name).
+            PushbackInputStream peek = new PushbackInputStream(Channels.newInputStream(input), 4);
+            DataInputStream header = new DataInputStream(peek);
+            int first = header.readInt();
+            int mode = NetworkModule.MODE_PLAIN;
+            if (first == NetworkModule.MAGIC) {
+                mode = header.readUnsignedByte();
+            } else {
+                peek.unread(ByteBuffer.allocate(4).putInt(first).array());
+            }
+            name = header.readUTF();
+            long size = header.readLong();
+            if (size < 0) throw new IOException("Bad file size " + size);
+            File target = targetFile(name);
+
+            // 2. Body
+            long start = System.nanoTime();
+            switch (mode) {
+                case NetworkModule.MODE_PLAIN:
+                    try (FileChannel out = create(target)) {
+                        transferFully(input, out, 0, size); // Straight from the socket into the file
+                    }
+                    break;
+                case NetworkModule.MODE_HUFFMAN:
+                    try (FileChannel out = create(target)) {
+                        receiveCompressed(peek, out, size);
+                    }
+                    break;
+                case NetworkModule.MODE_RESUMABLE:
+                    receiveResumable(channel, input, header, name, target, size);
+                    break;
+                case NetworkModule.MODE_PARALLEL:
+                    receiveRange(channel, input, header, name, target, size); // Reports the file itself, when complete
+                    return;
+                default:
+                    throw new IOException("Unknown transfer mode " + mode);
+            }
+            listener.fileReceived(target, size, System.nanoTime() - start);
+        } catch (Exception e) {
+            if (input.timedOut) {
+                e = new SocketTimeoutException("Nothing received for " + timeout + " ms, sender dropped.");
+            }
+            listener.transferFailed(name, e);
+        } finally {
+            connections.remove(input);
+        }
+    }
+
+    // Decodes blocks as they arrive, so receiving and decompressing overlap
+    private static void receiveCompressed(InputStream in, FileChannel out, long size) throws IOException {
+        HuffmanInputStream huffman = new HuffmanInputStream(new BufferedInputStream(in, 1 << 16));
+        byte[] buffer = new byte[1 << 16];
+        long received = 0;
+        int n;
+        try {
+            while ((n = huffman.read(buffer)) > 0) {
+                received += n;
+                if (received > size) throw new IOException("Sender sent more than the announced " + size + " bytes.");
+                ByteBuffer data = ByteBuffer.wrap(buffer, 0, n);
+                while (data.hasRemaining()) out.write(data);
+            }
+        } catch (EOFException e) {
+            throw new EOFException("Connection closed after " + received + " of " + size + " bytes.");
+        }
+        if (received != size) {
+            throw new EOFException("Transfer ended after " + received + " of " + size + " bytes.");
+        }
+    }
+
+    /**
+     * Resumable transfer (see NetworkModule.sendResumable): tells the sender how much of the file is
+     * already here and verified, then checks every chunk's CRC32 before it is written. The .part file
+     * therefore only ever holds verified data, whatever happens to the connection.
+     */
+    private void receiveResumable(SocketChannel channel, ReadableByteChannel input, DataInputStream in, String name,
+                                  File target, long size) throws IOException {
+        long modified = in.readLong();
+        int chunkSize = in.readInt();
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) throw new IOException("Bad chunk size " + chunkSize);
+
+        // Named after the file's size and date: a changed file starts over instead of mixing versions
+        File part = new File(target.getParentFile(), String.format("%s.%x-%x.part", target.getName(), size, modified));
+
+        // 1. Already complete? (the sender may just have missed our confirmation)
+        if (!part.exists() && target.isFile() && target.length() == size && target.lastModified() == modified) {
+            replyLong(channel, size);
+            reply(channel, NetworkModule.ACK);
+            return;
+        }
+
+        try (FileChannel out = FileChannel.open(part.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+            lock(out, name); // Released when 'out' is closed
+
+            // 2. Handshake: whole chunks already in the .part file were verified when they arrived
+            long verified = out.size();
+            if (verified > size) verified = 0;
+            else if (verified < size) verified -= verified % chunkSize;
+            out.truncate(verified);
+            replyLong(channel, verified);
+            if (verified > 0) listener.transferResumed(name, verified, size);
+
+            // 3. Chunks: [int length][int crc32][data], written only once the checksum matches
+            ByteBuffer chunk = ByteBuffer.allocateDirect(chunkSize);
+            CRC32 crc = new CRC32();
+            long position = verified;
+            while (position < size) {
+                int length = in.readInt();
+                int expected = in.readInt();
+                if (length <= 0 || length > chunkSize || length > size - position) {
+                    throw new IOException("Bad chunk length " + length + " at " + position);
+                }
+                chunk.clear();
+                chunk.limit(length);
+                while (chunk.hasRemaining()) {
+                    if (input.read(chunk) < 0) {
+                        throw new EOFException("Connection closed after " + position + " of " + size + " bytes (resumable).");
+                    }
+                }
+                chunk.flip();
+                crc.reset();
+                crc.update(chunk);
+                if ((int) crc.getValue() != expected) {
+                    throw new IOException("Chunk at " + position + " failed its checksum (resumable).");
+                }
+                chunk.rewind();
+                while (chunk.hasRemaining()) {
+                    position += out.write(chunk, position);
+                }
+            }
+            out.force(false);
+        }
+
+        // 4. Complete: move it into place, then confirm
+        Files.move(part.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        target.setLastModified(modified);
+        reply(channel, NetworkModule.ACK);
+    }
+
+    /**
+     * One connection of a parallel transfer (see NetworkModule.sendParallel): writes its byte range
+     * with positional transfers into the shared, preallocated .part file. The stream that finishes
+     * last moves the file into place before it confirms, so the sender's last ACK means "complete".
+     */
+    private void receiveRange(SocketChannel channel, ReadableByteChannel input, DataInputStream in, String name,
+                              File target, long size) throws IOException {
+        long modified = in.readLong();
+        long transferId = in.readLong();
+        int streams = in.readInt();
+        int stream = in.readInt();
+        long offset = in.readLong();
+        long length = in.readLong();
+        // Only the sender's split is accepted, so the streams cover the whole file exactly once
+        if (streams <= 0 || streams > MAX_CONNECTIONS || stream < 0 || stream >= streams
+                || offset != NetworkModule.rangeStart(size, streams, stream)
+                || length != NetworkModule.rangeStart(size, streams, stream + 1) - offset) {
+            throw new IOException("Bad range for stream " + stream + " of " + name);
+        }
+
+        // 1. Our range, at its offset
+        ParallelFile file = joinParallel(transferId, target, size, modified, streams, stream);
+        boolean complete;
+        try {
+            long done = 0;
+            while (done < length) {
+                long step = Math.min(NetworkModule.PROGRESS_STEP, length - done);
+                transferFully(input, file.file.getChannel(), offset + done, step);
+                done += step;
+                listener.streamProgress(name, stream, done, length);
+            }
+            // 2. The last stream completes the file
+            complete = finishStream(file, stream);
+        } catch (IOException e) {
+            failParallel(file);
+            throw e;
+        } finally {
+            leaveParallel(file);
+        }
+
+        // 3. Everyone confirms (the last one once the file is in place)
+        reply(channel, NetworkModule.ACK);
+        if (complete) {
+            listener.fileReceived(target, size, System.nanoTime() - file.started);
+        }
+    }
+
+    private ParallelFile joinParallel(long transferId, File target, long size, long modified, int streams,
+                                      int stream) throws IOException {
+        synchronized (parallelFiles) {
+            ParallelFile file = parallelFiles.get(transferId);
+            if (file == null) {
+                File part = new File(target.getParentFile(), String.format("%s.%016x.part", target.getName(), transferId));
+                long idleLimit = TimeUnit.MILLISECONDS.toNanos(2L * readTimeout);
+                file = new ParallelFile(target, part, size, modified, streams, idleLimit);
+                parallelFiles.put(transferId, file);
+            } else if (!file.target.equals(target) || file.size != size || file.streams != streams) {
+                throw new IOException("Stream does not match the transfer it claims to belong to.");
+            } else if (file.joined.get(stream)) {
+                throw new IOException("Stream " + stream + " of " + target.getName() + " arrived twice.");
+            }
+            file.joined.set(stream);
+            file.active++;
+            return file;
+        }
+    }
+
+    private void leaveParallel(ParallelFile file) {
+        synchronized (parallelFiles) {
+            if (--file.active == 0) file.idleSince = System.nanoTime();
+        }
+    }
+
+    // True for the stream that completed the file
+    private boolean finishStream(ParallelFile file, int stream) throws IOException {
+        synchronized (parallelFiles) {
+            if (file.failed) throw new IOException("Another stream of " + file.target.getName() + " failed.");
+            file.finished.set(stream);
+            if (file.finished.cardinality() < file.streams) return false;
+            parallelFiles.values().remove(file);
+        }
+        try {
+            file.file.close();
+            Files.move(file.part.toPath(), file.target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            file.part.delete();
+            throw e;
+        }
+        file.target.setLastModified(file.modified);
+        return true;
+    }
+
+    // One broken stream breaks the file: drop it (the other streams fail when they touch it)
+    private void failParallel(ParallelFile file) {
+        synchronized (parallelFiles) {
+            if (file.failed) return;
+            file.failed = true;
+            parallelFiles.values().remove(file);
+        }
+        try {
+            file.file.close();
+        } catch (IOException e) {
+            // Deleting it is all that matters
+        }
+        file.part.delete();
+    }
+
+    // Closes connections that have received nothing for the read timeout (their worker fails with
+    // the timeout), and drops parallel transfers that no stream has been connected to for too long
+    // (one never arrived, e.g. its connection failed before the header was read): their
+    // preallocated .part files go too
+    private void sweep() {
+        long now = System.nanoTime();
+        for (Connection connection : connections) {
+            if (now - connection.lastRead > connection.timeout) {
+                connection.timedOut = true;
+                try {
+                    connection.close();
+                } catch (IOException e) {
+                    // Closed is closed
+                }
+            }
+        }
+
+        List<ParallelFile> stale = new ArrayList<>();
+        synchronized (parallelFiles) {
+            for (ParallelFile file : parallelFiles.values()) {
+                if (file.active == 0 && now - file.idleSince > file.idleLimit) stale.add(file);
+            }
+        }
+        for (ParallelFile file : stale) {
+            failParallel(file);
+            listener.transferFailed(file.target.getName(), new SocketTimeoutException(
+                    "Only " + file.finished.cardinality() + " of " + file.streams + " streams arrived, transfer dropped."));
+        }
+    }
+
+    // Two senders of the same file must not write the same .part file
+    private static void lock(FileChannel part, String name) throws IOException {
+        try {
+            if (part.tryLock() != null) return;
+        } catch (OverlappingFileLockException e) {
+            // Held by another transfer in this process
+        }
+        throw new IOException(name + " is already being received.");
+    }
+
+    private static FileChannel create(File target) throws IOException {
+        return FileChannel.open(target.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static void replyLong(SocketChannel channel, long value) throws IOException {
+        NetworkModule.writeFully(channel, (ByteBuffer) ByteBuffer.allocate(8).putLong(value).flip());
+    }
+
+    private static void reply(SocketChannel channel, int value) throws IOException {
+        NetworkModule.writeFully(channel, ByteBuffer.wrap(new byte[]{(byte) value}));
+    }
+
+    // Only the last part of the name counts: a sender can't write outside saveDir
+    private File targetFile(String name) throws IOException {
+        String baseName = new File(name).getName();
+        if (baseName.isEmpty() || baseName.equals(".") || baseName.equals("..")) {
+            throw new IOException("Bad file name: " + name);
+        }
+        return new File(saveDir, baseName);
+    }
+
+    // --- Channel helpers ---
+
+    /**
+     * Moves exactly 'count' bytes from 'in', a blocking channel, to 'out' at 'position'
+     * (which must not lie beyond the end of 'out').
+     * @throws EOFException if the sender hangs up early
+     */
+    private static void transferFully(ReadableByteChannel in, FileChannel out, long position, long count) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long n = out.transferFrom(in, position, end - position);
+            // A blocking read waits for data, so moving nothing means the stream has ended
+            if (n == 0) {
+                throw new EOFException("Connection closed after " + (count - (end - position)) + " of " + count + " bytes.");
+            }
+            position += n;
+        }
+    }
+}
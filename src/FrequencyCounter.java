@@ -0,0 +1,129 @@
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Shared histogram engine: counts how many times every byte value appears.
+ *
+ * Speed tricks:
+ * - Files are read in large positional reads into a reused direct buffer, not byte by byte
+ *   (no mappings: those would stay alive, and on Windows keep the file locked, until GC).
+ * - Four interleaved count tables: runs of the same byte would otherwise make
+ *   every increment wait for the previous one to be stored (store-to-load stall).
+ * - Big files are split into ranges that are counted on several threads and merged.
+ */
+public class FrequencyCounter {
+
+    private static final int READ_WINDOW = 1 << 20;            // Read 1 MB at a time
+    private static final long PARALLEL_THRESHOLD = 32L << 20;  // Smaller files: one thread is enough
+
+    /**
+     * Counts the bytes of a whole file using all available cores.
+     */
+    public static long[] count(File file) throws IOException {
+        return count(file, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static long[] count(File file, int threads) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] totals = new long[256];
+
+            if (threads <= 1 || size < PARALLEL_THRESHOLD) {
+                countRange(channel, 0, size, totals);
+            } else {
+                // Split into one range per thread, count separately, merge the partial histograms
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    long rangeSize = (size + threads - 1) / threads;
+                    List<Future<long[]>> parts = new ArrayList<>();
+                    for (long start = 0; start < size; start += rangeSize) {
+                        final long from = start;
+                        final long len = Math.min(rangeSize, size - start);
+                        parts.add(pool.submit(() -> {
+                            long[] partial = new long[256];
+                            countRange(channel, from, len, partial);
+                            return partial;
+                        }));
+                    }
+                    for (Future<long[]> part : parts) {
+                        long[] partial = Tasks.await(part);
+                        for (int s = 0; s < 256; s++) totals[s] += partial[s];
+                    }
+                } finally {
+                    pool.shutdownNow();
+                }
+            }
+            return totals;
+        }
+    }
+
+    /**
+     * Adds the byte counts of data[off..off+len) to 'frequencies'.
+     */
+    public static void count(byte[] data, int off, int len, int[] frequencies) {
+        int[] t = new int[4 * 256];
+        int i = off;
+        int end = off + len;
+        int end4 = off + (len & ~3);
+        for (; i < end4; i += 4) {
+            t[data[i] & 0xFF]++;
+            t[256 + (data[i + 1] & 0xFF)]++;
+            t[512 + (data[i + 2] & 0xFF)]++;
+            t[768 + (data[i + 3] & 0xFF)]++;
+        }
+        for (; i < end; i++) {
+            t[data[i] & 0xFF]++;
+        }
+        for (int s = 0; s < 256; s++) {
+            frequencies[s] += t[s] + t[256 + s] + t[512 + s] + t[768 + s];
+        }
+    }
+
+    // Counts file[start..start+len) window by window (each window fits in int counters)
+    private static void countRange(FileChannel channel, long start, long len, long[] totals) throws IOException {
+        ByteBuffer window = ByteBuffer.allocateDirect(READ_WINDOW).order(ByteOrder.nativeOrder());
+        long end = start + len;
+        for (long pos = start; pos < end; pos += window.limit()) {
+            window.clear();
+            window.limit((int) Math.min(READ_WINDOW, end - pos));
+            while (window.hasRemaining()) {
+                if (channel.read(window, pos + window.position()) < 0) {
+                    throw new EOFException("File ended at " + (pos + window.position()) + " bytes (did it shrink?).");
+                }
+            }
+            window.flip();
+            count(window, totals);
+        }
+    }
+
+    // Reads 8 bytes per step straight out of the buffer and spreads them over 4 tables
+    private static void count(ByteBuffer buffer, long[] totals) {
+        int[] t = new int[4 * 256];
+        while (buffer.remaining() >= 8) {
+            long w = buffer.getLong();
+            t[(int) w & 0xFF]++;
+            t[256 + ((int) (w >>> 8) & 0xFF)]++;
+            t[512 + ((int) (w >>> 16) & 0xFF)]++;
+            t[768 + ((int) (w >>> 24) & 0xFF)]++;
+            t[(int) (w >>> 32) & 0xFF]++;
+            t[256 + ((int) (w >>> 40) & 0xFF)]++;
+            t[512 + ((int) (w >>> 48) & 0xFF)]++;
+            t[768 + ((int) (w >>> 56) & 0xFF)]++;
+        }
+        while (buffer.hasRemaining()) {
+            t[buffer.get() & 0xFF]++;
+        }
+        for (int s = 0; s < 256; s++) {
+            totals[s] += (long) t[s] + t[256 + s] + t[512 + s] + t[768 + s];
+        }
+    }
+}
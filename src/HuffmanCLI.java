@@ -0,0 +1,451 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless command-line entry point (no AWT/Swing, no FlatLaf), for servers and shell pipelines.
+ *
+ *   java HuffmanCLI compress   [-j N] [-o DIR] [--format F] FILE...   (FILE.huff next to each file)
+ *   java HuffmanCLI decompress [-j N] [-o DIR] FILE.huff...            (restored next to each .huff)
+ *   java HuffmanCLI archive    [-j N] [--dedup] [--update OLD.huff] FOLDER OUT.huff
+ *                              (--dedup: identical files once, --update: copy unchanged files from OLD.huff)
+ *   java HuffmanCLI extract    [-j N] ARCHIVE.huff [DEST [PATH...]]    (PATHs: only those entries)
+ *   java HuffmanCLI list       ARCHIVE.huff                           (size, compressed size, path)
+ *   java HuffmanCLI send       [-j N] [-p PORT] [--compress | --resume | --streams N] HOST FILE...
+ *                              (to a receiver, -j files at a time, --compress: Huffman-encoded on the fly,
+ *                               --resume: checksummed chunks, reconnects and resumes after a drop,
+ *                               --streams: each file split over N connections at once)
+ *   java HuffmanCLI receive    [-p PORT] DIR                          (saves uploads into DIR until killed)
+ *
+ * Use "-" as the only FILE to read stdin and write stdout, e.g.
+ *   tar c logs | java HuffmanCLI compress - > logs.tar.huff
+ * "decompress -" takes any single-file .huff; block-format files (the default for inputs over 4 MB)
+ * are spooled to a temporary file first, archives have to be given as a file.
+ * Several files are processed concurrently on a bounded thread pool (-j, default: all cores).
+ * Progress and the throughput summary go to stderr, so stdout stays clean for data.
+ */
+public class HuffmanCLI {
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * @return The process exit code (0 = all good, 1 = some file failed, 2 = bad usage).
+     */
+    public static int run(String[] args) {
+        if (args.length == 0) {
+            printUsage();
+            return 2;
+        }
+
+        String mode = args[0];
+        int threads = Runtime.getRuntime().availableProcessors();
+        File outputDir = null;
+        int format = -1; // -1 = let compress() pick
+        boolean dedup = false;
+        File previousArchive = null;
+        int port = NetworkModule.DEFAULT_PORT;
+        boolean compressOnWire = false;
+        boolean resumable = false;
+        int streams = 0; // 0 = one connection per file
+        List<String> files = new ArrayList<>();
+
+        // 1. Parse Options
+        try {
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-j")) {
+                    threads = Math.max(1, Integer.parseInt(args[++i]));
+                } else if (arg.equals("-o")) {
+                    outputDir = new File(args[++i]);
+                } else if (arg.equals("--dedup")) {
+                    dedup = true;
+                } else if (arg.equals("--update")) {
+                    previousArchive = new File(args[++i]);
+                } else if (arg.equals("--compress")) {
+                    compressOnWire = true;
+                } else if (arg.equals("--resume")) {
+                    resumable = true;
+                } else if (arg.equals("--streams")) {
+                    streams = Math.max(1, Integer.parseInt(args[++i]));
+                } else if (arg.equals("-p")) {
+                    port = Integer.parseInt(args[++i]);
+                } else if (arg.equals("--format")) {
+                    format = parseFormat(args[++i]);
+                } else {
+                    files.add(arg);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Bad arguments: " + e.getMessage());
+            printUsage();
+            return 2;
+        }
+
+        try {
+            switch (mode) {
+                case "compress":
+                case "decompress":
+                    if (files.isEmpty()) break;
+                    if (files.size() == 1 && files.get(0).equals("-")) {
+                        return pipe(mode.equals("compress"));
+                    }
+                    return runBatch(mode.equals("compress"), files, outputDir, format, threads);
+                case "archive":
+                    if (files.size() != 2) break;
+                    return archive(new File(files.get(0)), new File(files.get(1)), previousArchive, threads, dedup);
+                case "extract":
+                    if (files.isEmpty()) break;
+                    if (files.size() > 2) {
+                        return extractEntries(new File(files.get(0)), new File(files.get(1)), files.subList(2, files.size()));
+                    }
+                    return extract(new File(files.get(0)), files.size() == 2 ? new File(files.get(1)) : null, threads);
+                case "list":
+                    if (files.size() != 1) break;
+                    return list(new File(files.get(0)));
+                case "send":
+                    if (files.size() < 2 || (compressOnWire ? 1 : 0) + (resumable ? 1 : 0) + (streams > 0 ? 1 : 0) > 1) break;
+                    return send(files.get(0), port, files.subList(1, files.size()), compressOnWire, resumable, streams, threads);
+                case "receive":
+                    if (files.size() != 1) break;
+                    return receive(new File(files.get(0)), port);
+                default:
+                    System.err.println("Unknown mode: " + mode);
+            }
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            return 1;
+        }
+        printUsage();
+        return 2;
+    }
+
+    // ==================== STDIN / STDOUT ====================
+    private static int pipe(boolean compress) throws IOException {
+        long start = System.nanoTime();
+        CountingInputStream in = new CountingInputStream(new BufferedInputStream(System.in, 1 << 16));
+        CountingOutputStream out = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16));
+
+        if (compress) {
+            HuffmanCompressor.compress(in, out);
+        } else {
+            HuffmanCompressor.decompress(in, out);
+        }
+        out.flush();
+
+        printSummary(1, 0, in.count, out.count, System.nanoTime() - start);
+        return 0;
+    }
+
+    // ==================== BATCH (MANY FILES) ====================
+    private static int runBatch(boolean compress, List<String> files, File outputDir, int format, int threads)
+            throws InterruptedException {
+        if (outputDir != null) outputDir.mkdirs();
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+        List<Future<long[]>> results = new ArrayList<>();
+        for (String path : files) {
+            results.add(pool.submit(() -> compress ? compressOne(path, outputDir, format) : decompressOne(path, outputDir)));
+        }
+        pool.shutdown();
+
+        int failed = 0;
+        long bytesIn = 0;
+        long bytesOut = 0;
+        for (int i = 0; i < files.size(); i++) {
+            try {
+                long[] sizes = Tasks.await(results.get(i));
+                bytesIn += sizes[0];
+                bytesOut += sizes[1];
+            } catch (Exception e) {
+                failed++;
+                System.err.println("FAILED " + files.get(i) + ": " + e.getMessage());
+            }
+        }
+
+        printSummary(files.size() - failed, failed, bytesIn, bytesOut, System.nanoTime() - start);
+        return failed == 0 ? 0 : 1;
+    }
+
+    private static long[] compressOne(String path, File outputDir, int format) throws IOException {
+        File input = new File(path);
+        if (!input.isFile()) throw new FileNotFoundException("Not a file: " + path);
+        File dir = (outputDir != null) ? outputDir : input.getAbsoluteFile().getParentFile();
+        File output = new File(dir, input.getName() + ".huff");
+
+        if (format < 0) {
+            HuffmanCompressor.compress(input.getAbsolutePath(), output.getAbsolutePath());
+        } else {
+            HuffmanCompressor.compress(input.getAbsolutePath(), output.getAbsolutePath(), format);
+        }
+        System.err.println("Compressed " + path + " -> " + output.getPath());
+        return new long[]{input.length(), output.length()};
+    }
+
+    private static long[] decompressOne(String path, File outputDir) throws IOException {
+        File input = new File(path);
+        File restored = new File(HuffmanCompressor.decompress(input.getAbsolutePath(), outputDir));
+        System.err.println("Restored " + path + " -> " + restored.getPath());
+        return new long[]{input.length(), restored.length()};
+    }
+
+    // ==================== FOLDERS ====================
+    private static int archive(File folder, File output, File previousArchive, int threads, boolean dedup) throws IOException {
+        if (!folder.isDirectory()) throw new FileNotFoundException("Not a folder: " + folder);
+        long start = System.nanoTime();
+
+        // Same pipeline as the GUI: files compressed in parallel straight into the archive
+        if (previousArchive != null) {
+            // Only new or changed files are compressed, the rest is copied from the previous archive
+            new Archiver().updateCompressedArchive(folder, previousArchive, output, threads, dedup);
+        } else {
+            new Archiver().createCompressedArchive(folder, output, threads, dedup);
+        }
+        printSummary(1, 0, folderSize(folder), output.length(), System.nanoTime() - start);
+        return 0;
+    }
+
+    private static int extract(File archive, File destFolder, int threads) throws IOException {
+        long start = System.nanoTime();
+        if (Unarchiver.isCompressedArchive(archive)) {
+            if (destFolder == null) {
+                destFolder = new File(archive.getAbsoluteFile().getParentFile(), archive.getName().replaceFirst("\\.huff$", ""));
+            }
+            // Every entry reports on its own, a broken one does not stop the rest
+            List<Unarchiver.Result> results = new Unarchiver().extractAll(archive, destFolder, threads);
+            int failed = 0;
+            long restoredSize = 0;
+            for (Unarchiver.Result result : results) {
+                if (result.error == null) {
+                    restoredSize += result.entry.size;
+                } else {
+                    failed++;
+                    System.err.println("FAILED " + result.entry.path + ": " + result.error.getMessage());
+                }
+            }
+            printSummary(results.size() - failed, failed, archive.length(), restoredSize, System.nanoTime() - start);
+            return failed == 0 ? 0 : 1;
+        }
+
+        // Older archives: a .tar that was compressed as a single file
+        File restored = new File(HuffmanCompressor.decompress(archive.getAbsolutePath()));
+        long restoredSize = restored.length();
+        try {
+            if (destFolder == null) {
+                destFolder = new File(restored.getParentFile(), restored.getName().replaceFirst("\\.tar$", ""));
+            }
+            new Unarchiver().unpackArchive(restored, destFolder);
+        } finally {
+            restored.delete();
+        }
+        printSummary(1, 0, archive.length(), restoredSize, System.nanoTime() - start);
+        return 0;
+    }
+
+    // Only the named entries, each read straight from its offset in the archive
+    private static int extractEntries(File archive, File destFolder, List<String> paths) throws IOException {
+        long start = System.nanoTime();
+        Unarchiver unarchiver = new Unarchiver();
+        int failed = 0;
+        long restoredSize = 0;
+        for (String path : paths) {
+            try {
+                File output = new File(destFolder, path);
+                unarchiver.extract(archive, path, output);
+                restoredSize += output.length();
+                System.err.println("Extracted " + path + " -> " + output.getPath());
+            } catch (IOException e) {
+                failed++;
+                System.err.println("FAILED " + path + ": " + e.getMessage());
+            }
+        }
+        printSummary(paths.size() - failed, failed, archive.length(), restoredSize, System.nanoTime() - start);
+        return failed == 0 ? 0 : 1;
+    }
+
+    private static int list(File archive) throws IOException {
+        long size = 0;
+        long stored = 0;
+        List<ArchiveEntry> entries = new Unarchiver().list(archive);
+        for (ArchiveEntry entry : entries) {
+            System.out.printf("%,15d %,15d  %s%n", entry.size, entry.storedSize, entry.path);
+            size += entry.size;
+            stored += entry.storedSize;
+        }
+        System.out.printf("%,15d %,15d  %d file(s)%n", size, stored, entries.size());
+        return 0;
+    }
+
+    // ==================== NETWORK ====================
+    private static int send(String host, int port, List<String> files, boolean compress, boolean resumable, int streams,
+                            int threads) throws InterruptedException {
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+        List<Future<Long>> results = new ArrayList<>();
+        for (String path : files) {
+            results.add(pool.submit(() -> {
+                File file = new File(path);
+                if (!file.isFile()) throw new FileNotFoundException("Not a file: " + path);
+                if (resumable) {
+                    NetworkModule.sendResumable(file, host, port);
+                } else if (streams > 0) {
+                    NetworkModule.sendParallel(file, host, port, streams, progressPrinter());
+                } else {
+                    NetworkModule.send(file, host, port, compress);
+                }
+                System.err.println("Sent " + path + " -> " + host + ":" + port);
+                return file.length();
+            }));
+        }
+        pool.shutdown();
+
+        int failed = 0;
+        long bytes = 0;
+        for (int i = 0; i < files.size(); i++) {
+            try {
+                bytes += Tasks.await(results.get(i));
+            } catch (Exception e) {
+                failed++;
+                System.err.println("FAILED " + files.get(i) + ": " + e.getMessage());
+            }
+        }
+        printSummary(files.size() - failed, failed, bytes, bytes, System.nanoTime() - start);
+        return failed == 0 ? 0 : 1;
+    }
+
+    // Per-stream progress of parallel sends, in 10% steps
+    private static TransferListener progressPrinter() {
+        return new TransferListener() {
+            private final Map<Integer, Long> printed = new ConcurrentHashMap<>();
+
+            @Override
+            public void streamProgress(String name, int stream, long done, long length) {
+                long tenths = length == 0 ? 10 : done * 10 / length;
+                Long last = printed.put(stream, tenths);
+                if (last == null || last != tenths) {
+                    System.err.printf("%s: stream %d %d%% (%,d of %,d bytes)%n", name, stream, tenths * 10, done, length);
+                }
+            }
+        };
+    }
+
+    private static int receive(File saveDir, int port) throws IOException, InterruptedException {
+        if (!saveDir.isDirectory()) throw new FileNotFoundException("Not a folder: " + saveDir);
+        FileReceiver receiver = new FileReceiver(port, saveDir, new TransferListener() {
+            @Override
+            public void serverStarted(int port) {
+                System.err.println("Waiting for files on port " + port + " (Ctrl+C to stop)");
+            }
+
+            @Override
+            public void fileReceived(File file, long bytes, long nanos) {
+                double seconds = Math.max(nanos, 1) / 1e9;
+                System.err.printf("Received %s | %,d bytes | %.2f s | %.1f MB/s%n",
+                        file.getPath(), bytes, seconds, bytes / 1e6 / seconds);
+            }
+
+            @Override
+            public void transferResumed(String name, long verifiedBytes, long size) {
+                System.err.printf("Resuming %s at %,d of %,d bytes%n", name, verifiedBytes, size);
+            }
+
+            @Override
+            public void transferFailed(String name, Exception error) {
+                System.err.println("FAILED " + (name != null ? name : "connection") + ": " + error.getMessage());
+            }
+        });
+        receiver.awaitTermination();
+        return 0;
+    }
+
+    // ==================== HELPERS ====================
+    private static int parseFormat(String name) {
+        switch (name.toLowerCase()) {
+            case "classic": return HuffmanCompressor.FORMAT_CLASSIC;
+            case "canonical": return HuffmanCompressor.FORMAT_CANONICAL;
+            case "blocks": return HuffmanCompressor.FORMAT_BLOCKS;
+            case "adaptive": return HuffmanCompressor.FORMAT_ADAPTIVE;
+            default: throw new IllegalArgumentException("unknown format " + name);
+        }
+    }
+
+    private static long folderSize(File file) {
+        if (!file.isDirectory()) return file.length();
+        long size = 0;
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) size += folderSize(child);
+        }
+        return size;
+    }
+
+    private static void printSummary(int ok, int failed, long bytesIn, long bytesOut, long nanos) {
+        double seconds = Math.max(nanos, 1) / 1e9;
+        System.err.printf("%d file(s) done, %d failed | %,d -> %,d bytes | %.2f s | %.1f MB/s%n",
+                ok, failed, bytesIn, bytesOut, seconds, bytesIn / 1e6 / seconds);
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage:");
+        System.err.println("  java HuffmanCLI compress   [-j N] [-o DIR] [--format classic|canonical|blocks|adaptive] FILE...");
+        System.err.println("  java HuffmanCLI decompress [-j N] [-o DIR] FILE.huff...");
+        System.err.println("  java HuffmanCLI archive    [-j N] [--dedup] [--update OLD.huff] FOLDER OUT.huff");
+        System.err.println("  java HuffmanCLI extract    [-j N] ARCHIVE.huff [DEST [PATH...]]");
+        System.err.println("  java HuffmanCLI list       ARCHIVE.huff");
+        System.err.println("  java HuffmanCLI send       [-j N] [-p PORT] [--compress | --resume | --streams N] HOST FILE...");
+        System.err.println("  java HuffmanCLI receive    [-p PORT] DIR");
+        System.err.println("  Use '-' as the only FILE to read stdin and write stdout.");
+        System.err.println("  decompress - takes any single-file .huff (block files, the default over 4 MB, are spooled");
+        System.err.println("  to a temp file first); archives must be given as a file.");
+    }
+
+    // Byte counters for the stdin/stdout summary
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -1,54 +1,129 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class HuffmanCompressor {
 
+    // --- File Formats ---
+    // CLASSIC:   [nameLen][name][256 x int frequency][body]
+    // CANONICAL: [0][1][UTF name][long totalBytes][packed code lengths][body]
+    // BLOCKS:    [0][2][UTF name][long totalBytes][int blockSize][blocks...]
+    //            [int blockCount][blockCount x (long offset, int size, int rawSize)][long indexOffset]
+    // STREAM:    [0][3][frames of (int rawLength, int blockLength, block)][int 0]  (HuffmanOutputStream)
+    // ADAPTIVE:  [0][4][UTF name][adaptive bit stream ending with an EOF symbol]  (AdaptiveHuffman)
+    // ARCHIVE:   [0][5][UTF folderName][int blockSize][compressed entries...][int 0]  (Archiver)
+    // Every newer format starts with a 0 byte: a classic file never has an empty name.
+    public static final int FORMAT_CLASSIC = 0;
+    public static final int FORMAT_CANONICAL = 1;
+    public static final int FORMAT_BLOCKS = 2;
+    public static final int FORMAT_STREAM = 3;
+    public static final int FORMAT_ADAPTIVE = 4;
+    public static final int FORMAT_ARCHIVE = 5;
+
+    // Block format: each block has its own code table and is encoded on its own core
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 20; // 1 MB
+
     /**
      * Helper: Counts how many times every byte appears in the file.
      */
-    private static int[] getFrequencies(File inputFile) throws IOException {
-        int[] frequencies = new int[256];
-        try (FileInputStream fis = new FileInputStream(inputFile)) {
-            int byteRead;
-            while ((byteRead = fis.read()) != -1) {
-                frequencies[byteRead]++;
-            }
-        }
-        return frequencies;
+    private static long[] getFrequencies(File inputFile) throws IOException {
+        return FrequencyCounter.count(inputFile);
     }
 
     /**
-     * COMPRESS: Turns a normal file into a .huff file
+     * COMPRESS: Turns a normal file into a .huff file.
+     * Big files use the block format so every core can help, small ones the canonical format.
      */
     public static void compress(String inputFilePath, String outputFilePath) throws IOException {
+        boolean large = new File(inputFilePath).length() > 4L * DEFAULT_BLOCK_SIZE;
+        compress(inputFilePath, outputFilePath, large ? FORMAT_BLOCKS : FORMAT_CANONICAL);
+    }
+
+    /**
+     * COMPRESS: Turns a normal file into a .huff file using the given FORMAT_* layout.
+     */
+    public static void compress(String inputFilePath, String outputFilePath, int format) throws IOException {
         File inputFile = new File(inputFilePath);
+        if (format == FORMAT_BLOCKS) {
+            compressBlocks(inputFile, outputFilePath, DEFAULT_BLOCK_SIZE, Runtime.getRuntime().availableProcessors());
+            return;
+        }
+        if (format == FORMAT_ADAPTIVE) {
+            compressAdaptive(inputFile, outputFilePath);
+            return;
+        }
         
         // 1. Analyze File
-        int[] frequencies = getFrequencies(inputFile);
+        long[] frequencies = getFrequencies(inputFile);
         HuffmanNode root = HuffmanTree.buildTree(frequencies);
-        String[] codes = HuffmanTree.generateCodes(root);
+        CodeTable codes;
+
+        // 2. Build Header (Standard Java DataOutputStream, into memory)
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(headerBytes);
+        String filename = inputFile.getName();
+
+        if (format == FORMAT_CANONICAL) {
+            // Only the (length-limited) code lengths are stored, the codes are rebuilt from them
+            int[] lengths = HuffmanTree.limitCodeLengths(
+                    HuffmanTree.generateCodeLengths(root), CodeTable.MAX_CODE_LENGTH);
+            codes = HuffmanTree.generateCanonicalCodes(lengths);
+
+            long totalBytes = 0;
+            for (long f : frequencies) totalBytes += f;
+
+            dos.writeByte(0);
+            dos.writeByte(FORMAT_CANONICAL);
+            dos.writeUTF(filename);
+            dos.writeLong(totalBytes);
+            CodeTable.writeCodeLengths(dos, lengths);
+        } else if (format == FORMAT_CLASSIC) {
+            codes = HuffmanTree.generatePackedCodes(root);
 
-        // 2. Write Header (Standard Java DataOutputStream)
-        try (DataOutputStream dos = new DataOutputStream(new FileOutputStream(outputFilePath))) {
-            
             // A. Write original filename length & name
-            String filename = inputFile.getName();
             dos.writeByte(filename.length());
             dos.writeBytes(filename);
 
             // B. Write Frequency Table (256 integers)
-            for (int f : frequencies) {
-                dos.writeInt(f);
+            // The classic header only has 32 bits per count, bigger files need the newer formats
+            for (long f : frequencies) {
+                if (f > 0xFFFFFFFFL) {
+                    throw new IOException("File too large for the classic format, use FORMAT_CANONICAL.");
+                }
+                dos.writeInt((int) f);
             }
+        } else {
+            throw new IllegalArgumentException("Unknown format: " + format);
         }
+        long[] codeBits = codes.codes;
+        int[] codeLengths = codes.lengths;
 
-        // 3. Write Body (Our Custom BitOutputStream)
-        // Note: append=true because we want to add to the existing file after the header
-        try (BitOutputStream bos = new BitOutputStream(outputFilePath, true)) {
-            try (FileInputStream fis = new FileInputStream(inputFile)) {
-                int byteRead;
-                while ((byteRead = fis.read()) != -1) {
-                    String code = codes[byteRead];
-                    bos.writeCode(code);
+        // 3. Write Header + Body through one channel (Our Custom BitOutputStream for the body)
+        try (FileChannel in = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(new File(outputFilePath).toPath(),
+                     StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, 0, headerBytes.toByteArray());
+            out.position(headerBytes.size());
+
+            try (BitOutputStream bos = new BitOutputStream(out)) {
+                // Direct buffer: the channel reads straight into it, no copy through the heap
+                ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+                while (in.read(buffer) != -1) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        int b = buffer.get() & 0xFF;
+                        bos.writeBits(codeBits[b], codeLengths[b]);
+                    }
+                    buffer.clear();
                 }
             }
         }
@@ -59,68 +134,402 @@ public class HuffmanCompressor {
      * UPDATE: Now returns String (the path of the restored file).
      */
     public static String decompress(String inputFilePath) throws IOException {
+        return decompress(inputFilePath, null);
+    }
+
+    /**
+     * Same as decompress(String), restoring into 'outputDir' (null = next to the .huff file).
+     */
+    public static String decompress(String inputFilePath, File outputDir) throws IOException {
         
-        File outputFile = null;
+        File outputFile;
 
         // 1. Read Header
-        try (DataInputStream dis = new DataInputStream(new FileInputStream(inputFilePath))) {
-            
+        try (FileChannel in = FileChannel.open(new File(inputFilePath).toPath(), StandardOpenOption.READ)) {
+            Header header = readHeader(in);
+
+            String originalName = header.originalName;
+            if (originalName == null) {
+                // Streams carry no name: restore under the .huff name minus its extension
+                originalName = new File(inputFilePath).getName().replaceFirst("\\.huff$", "");
+            }
+            outputFile = restoredFile(inputFilePath, originalName, outputDir);
+
+            // 2. Decode Body
+            if (header.format == FORMAT_BLOCKS) {
+                decompressBlocks(new File(inputFilePath), outputFile, header.totalBytes, header.blockSize);
+            } else if (header.format == FORMAT_ARCHIVE) {
+                // A whole folder: the restored "file" is the extracted folder
+                new Unarchiver().unpackCompressedArchive(new File(inputFilePath), outputFile);
+            } else if (header.decoder != null) {
+                // The size is known up front: preallocate the output, then decode channel to channel
+                boolean complete = false;
+                try (RandomAccessFile raf = new RandomAccessFile(outputFile, "rw")) {
+                    raf.setLength(header.totalBytes);
+                    BitInputStream bis = new BitInputStream(in, header.totalBytes);
+                    long decoded = header.decoder.decode(bis, Channels.newOutputStream(raf.getChannel()), header.totalBytes);
+                    checkDecoded(decoded, header.totalBytes);
+                    complete = true;
+                } finally {
+                    // A truncated input must not leave a full-length file with a zero-filled tail behind
+                    if (!complete) outputFile.delete();
+                }
+            } else {
+                DataInputStream dis = new DataInputStream(new BufferedInputStream(Channels.newInputStream(in), 1 << 16));
+                try (OutputStream fos = new BufferedOutputStream(new FileOutputStream(outputFile), 1 << 16)) {
+                    decodeBody(header, dis, fos);
+                }
+            }
+        }
+        
+        // Return the absolute path so the GUI knows what file we just made
+        return outputFile.getAbsolutePath();
+    }
+
+    /**
+     * DECOMPRESS (streams): Decodes .huff data read from 'in' into 'out', e.g. for stdin/stdout.
+     * Every single-file format works. FORMAT_BLOCKS keeps its block lengths in an index at the end,
+     * so that one is first spooled to a temporary file (which needs as much free disk space).
+     * Archives (FORMAT_ARCHIVE) hold a whole folder and have to be extracted from a file.
+     */
+    public static void decompress(InputStream in, OutputStream out) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, 1 << 16);
+        buffered.mark(1 << 17); // Longer than any header (the name is at most 64 KB)
+        DataInputStream dis = new DataInputStream(buffered);
+        Header header = readHeader(dis);
+        if (header.format == FORMAT_ARCHIVE) {
+            throw new IOException("Archives hold a whole folder: extract them from a file, not from stdin.");
+        }
+        if (header.format == FORMAT_BLOCKS) {
+            buffered.reset();
+            decompressSpooled(buffered, out, header);
+        } else {
+            decodeBody(header, dis, out);
+        }
+        out.flush();
+    }
+
+    // FORMAT_BLOCKS from a stream: the whole .huff to a temp file, decoded as usual, copied out
+    private static void decompressSpooled(InputStream in, OutputStream out, Header header) throws IOException {
+        File spooled = File.createTempFile("huff-in", ".huff");
+        File restored = File.createTempFile("huff-out", ".tmp");
+        try {
+            Files.copy(in, spooled.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            decompressBlocks(spooled, restored, header.totalBytes, header.blockSize);
+            Files.copy(restored.toPath(), out);
+        } finally {
+            spooled.delete();
+            restored.delete();
+        }
+    }
+
+    /**
+     * COMPRESS (streams): Encodes 'in' into 'out' as a FORMAT_STREAM stream, one block at a time.
+     */
+    public static void compress(InputStream in, OutputStream out) throws IOException {
+        HuffmanOutputStream hos = new HuffmanOutputStream(out);
+        byte[] buffer = new byte[64 * 1024];
+        int bytesRead;
+        while ((bytesRead = in.read(buffer)) != -1) {
+            hos.write(buffer, 0, bytesRead);
+        }
+        hos.close();
+    }
+
+    // What the header of a .huff file says
+    private static class Header {
+        int format;
+        String originalName;      // null for FORMAT_STREAM
+        long totalBytes;
+        int blockSize;            // FORMAT_BLOCKS / FORMAT_ARCHIVE only
+        HuffmanDecoder decoder;   // FORMAT_CLASSIC / FORMAT_CANONICAL only
+    }
+
+    // Largest possible header: a UTF name of up to 64 KB plus the packed code lengths
+    private static final int MAX_HEADER_SIZE = 72 * 1024;
+
+    /**
+     * Reads the header from the start of a file and leaves the channel positioned right after it.
+     */
+    private static Header readHeader(FileChannel in) throws IOException {
+        ByteBuffer prefix = ByteBuffer.allocate((int) Math.min(in.size(), MAX_HEADER_SIZE));
+        while (prefix.hasRemaining() && in.read(prefix) != -1) {
+            // keep reading until the prefix is full
+        }
+        ByteArrayInputStream bytes = new ByteArrayInputStream(prefix.array(), 0, prefix.position());
+        Header header = readHeader(new DataInputStream(bytes));
+        in.position(prefix.position() - bytes.available());
+        return header;
+    }
+
+    private static Header readHeader(DataInputStream dis) throws IOException {
+        Header header = new Header();
+
+        int nameLength = dis.readByte();
+        if (nameLength != 0) {
+            header.format = FORMAT_CLASSIC;
+
             // A. Read filename
-            int nameLength = dis.readByte();
             byte[] nameBytes = new byte[nameLength];
             dis.readFully(nameBytes);
-            String originalName = new String(nameBytes);
+            header.originalName = new String(nameBytes);
 
-            // B. Read Frequencies
-            int[] frequencies = new int[256];
-            long totalBytes = 0;
+            // B. Read Frequencies (unsigned, so counts between 2^31 and 2^32 survive)
+            long[] frequencies = new long[256];
             for (int i = 0; i < 256; i++) {
-                frequencies[i] = dis.readInt();
-                totalBytes += frequencies[i];
+                frequencies[i] = dis.readInt() & 0xFFFFFFFFL;
+                header.totalBytes += frequencies[i];
             }
 
             // C. Rebuild Tree
             HuffmanNode root = HuffmanTree.buildTree(frequencies);
+            header.decoder = HuffmanDecoder.fromTree(root);
+            return header;
+        }
 
-            // 2. Decode Body
+        // Newer format: 0 marker, then the format id
+        header.format = dis.readUnsignedByte();
+        switch (header.format) {
+            case FORMAT_STREAM:
+                break;
+            case FORMAT_ADAPTIVE:
+                header.originalName = dis.readUTF();
+                break;
+            case FORMAT_CANONICAL:
+                header.originalName = dis.readUTF();
+                header.totalBytes = dis.readLong();
+                // Canonical codes: the decode table comes straight from the lengths
+                header.decoder = HuffmanDecoder.fromCodeLengths(CodeTable.readCodeLengths(dis));
+                break;
+            case FORMAT_BLOCKS:
+                header.originalName = dis.readUTF();
+                header.totalBytes = dis.readLong();
+                header.blockSize = dis.readInt();
+                break;
+            case FORMAT_ARCHIVE:
+                header.originalName = dis.readUTF();
+                header.blockSize = dis.readInt();
+                break;
+            default:
+                throw new IOException("Unsupported .huff format: " + header.format);
+        }
+        return header;
+    }
+
+    // Decodes everything after the header (formats that are read front to back)
+    private static void decodeBody(Header header, DataInputStream dis, OutputStream out) throws IOException {
+        if (header.format == FORMAT_STREAM) {
+            InputStream in = HuffmanInputStream.afterHeader(dis);
+            byte[] buffer = new byte[64 * 1024];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                out.write(buffer, 0, bytesRead);
+            }
+        } else if (header.format == FORMAT_ADAPTIVE) {
+            AdaptiveHuffman.decompress(dis, out);
+        } else {
             // We use 'dis' (already past header) for the BitReader
-            try (BitInputStream bis = new BitInputStream(dis, totalBytes)) {
-                
-                File compressedFile = new File(inputFilePath);
-                File parentDir = compressedFile.getParentFile();
-                
-                if (parentDir == null) {
-                    outputFile = new File("Restored_" + originalName);
-                } else {
-                    // Try to restore to original name, handling collisions if needed
-                    outputFile = new File(parentDir, originalName);
-                }
-                
-                try (FileOutputStream fos = new FileOutputStream(outputFile)) {
-                    HuffmanNode current = root;
-                    long decoded = 0;
-
-                    while (decoded < totalBytes) {
-                        int bit = bis.readBit();
-                        if (bit == -1) break;
-
-                        // Walk the tree
-                        if (bit == 0) current = current.left;
-                        else current = current.right;
-
-                        // Found a byte!
-                        if (current.isLeaf()) {
-                            fos.write(current.data);
-                            current = root; // Reset to top
-                            decoded++;
-                            bis.byteDecoded();
-                        }
-                    }
+            // Table-driven decode: one lookup per symbol instead of one tree step per bit
+            BitInputStream bis = new BitInputStream(dis, header.totalBytes);
+            checkDecoded(header.decoder.decode(bis, out, header.totalBytes), header.totalBytes);
+        }
+    }
+
+    private static void checkDecoded(long decoded, long totalBytes) throws EOFException {
+        if (decoded < totalBytes) {
+            throw new EOFException("Unexpected End of File: restored " + decoded + " of " + totalBytes + " bytes.");
+        }
+    }
+
+    /**
+     * Where the restored file goes: next to the .huff file, under its original name.
+     */
+    private static File restoredFile(String inputFilePath, String originalName, File outputDir) {
+        if (outputDir != null) {
+            return new File(outputDir, originalName);
+        }
+        File compressedFile = new File(inputFilePath);
+        File parentDir = compressedFile.getParentFile();
+
+        if (parentDir == null) {
+            return new File("Restored_" + originalName);
+        }
+        // Try to restore to original name, handling collisions if needed
+        return new File(parentDir, originalName);
+    }
+
+    // Single pass: no frequency count, the model adapts while encoding
+    private static void compressAdaptive(File inputFile, String outputFilePath) throws IOException {
+        try (InputStream in = new FileInputStream(inputFile);
+             DataOutputStream dos = new DataOutputStream(new FileOutputStream(outputFilePath))) {
+            dos.writeByte(0);
+            dos.writeByte(FORMAT_ADAPTIVE);
+            dos.writeUTF(inputFile.getName());
+            AdaptiveHuffman.compress(in, dos);
+        }
+    }
+
+    // ==================== BLOCK FORMAT ====================
+
+    /**
+     * Splits the input into fixed-size blocks, encodes them concurrently on a ForkJoin pool
+     * and writes them in order, followed by an index of where every block landed.
+     */
+    public static void compressBlocks(File inputFile, String outputFilePath, int blockSize, int threads) throws IOException {
+        long totalBytes = inputFile.length();
+        long blocks = (totalBytes + blockSize - 1) / blockSize;
+        if (blocks > Integer.MAX_VALUE) {
+            throw new IOException("File too large for block size " + blockSize);
+        }
+        int blockCount = (int) blocks;
+        long[] offsets = new long[blockCount];
+        int[] sizes = new int[blockCount];
+        int[] rawSizes = new int[blockCount];
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (FileChannel in = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(new File(outputFilePath).toPath(),
+                     StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            // 1. Header
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(headerBytes);
+            dos.writeByte(0);
+            dos.writeByte(FORMAT_BLOCKS);
+            dos.writeUTF(inputFile.getName());
+            dos.writeLong(totalBytes);
+            dos.writeInt(blockSize);
+            writeFully(out, 0, headerBytes.toByteArray());
+            long position = headerBytes.size();
+
+            // 2. Blocks: keep a bounded window of blocks in flight, write them back in order
+            ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>();
+            int window = threads * 2;
+            int next = 0;
+            for (int i = 0; i < blockCount; i++) {
+                while (next < blockCount && inFlight.size() < window) {
+                    final long start = (long) next * blockSize;
+                    final int len = (int) Math.min(blockSize, totalBytes - start);
+                    rawSizes[next] = len;
+                    inFlight.add(pool.submit(() -> BlockCodec.encode(readFully(in, start, len), 0, len)));
+                    next++;
                 }
+
+                byte[] block = Tasks.await(inFlight.poll());
+                writeFully(out, position, block);
+                offsets[i] = position;
+                sizes[i] = block.length;
+                position += block.length;
+            }
+
+            // 3. Block Index (at the end, so blocks can be streamed out as they finish)
+            ByteArrayOutputStream indexBytes = new ByteArrayOutputStream(4 + blockCount * 16 + 8);
+            dos = new DataOutputStream(indexBytes);
+            dos.writeInt(blockCount);
+            for (int i = 0; i < blockCount; i++) {
+                dos.writeLong(offsets[i]);
+                dos.writeInt(sizes[i]);
+                dos.writeInt(rawSizes[i]);
             }
+            dos.writeLong(position);
+            writeFully(out, position, indexBytes.toByteArray());
+        } finally {
+            pool.shutdownNow();
         }
-        
-        // Return the absolute path so the GUI knows what file we just made
-        return outputFile.getAbsolutePath();
     }
-}
\ No newline at end of file
+
+    /**
+     * Restores a block-format file using its block index.
+     * Blocks are independent, so they are decoded concurrently and each one is written
+     * straight to its own offset in the (preallocated) output file.
+     */
+    private static void decompressBlocks(File inputFile, File outputFile, long totalBytes, int blockSize) throws IOException {
+        decompressBlocks(inputFile, outputFile, totalBytes, blockSize, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static void decompressBlocks(File inputFile, File outputFile, long totalBytes, int blockSize, int threads) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (FileChannel in = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ);
+             RandomAccessFile raf = new RandomAccessFile(outputFile, "rw")) {
+
+            BlockIndex index = readBlockIndex(in, totalBytes, blockSize);
+
+            // Preallocate: every worker knows exactly where its block goes
+            raf.setLength(totalBytes);
+            FileChannel out = raf.getChannel();
+
+            List<Future<Void>> tasks = new ArrayList<>(index.offsets.length);
+            for (int i = 0; i < index.offsets.length; i++) {
+                final int blockId = i;
+                tasks.add(pool.submit(() -> {
+                    byte[] block = readFully(in, index.offsets[blockId], index.sizes[blockId]);
+                    byte[] raw = new byte[index.rawSizes[blockId]];
+                    BlockCodec.decode(block, 0, block.length, raw, 0, raw.length);
+                    writeFully(out, (long) blockId * blockSize, raw);
+                    return null;
+                }));
+            }
+            for (Future<Void> task : tasks) {
+                Tasks.await(task);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Where every block of a block-format file is (read from the end of the file)
+    private static class BlockIndex {
+        long[] offsets;
+        int[] sizes;
+        int[] rawSizes;
+    }
+
+    private static BlockIndex readBlockIndex(FileChannel in, long totalBytes, int blockSize) throws IOException {
+        long fileSize = in.size();
+        if (fileSize < 8) throw new IOException("Corrupt data: missing block index.");
+        long indexOffset = ByteBuffer.wrap(readFully(in, fileSize - 8, 8)).getLong();
+        if (indexOffset < 0 || indexOffset > fileSize - 12) throw new IOException("Corrupt data: bad block index offset.");
+
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(
+                readFully(in, indexOffset, (int) Math.min(Integer.MAX_VALUE, fileSize - 8 - indexOffset))));
+        int blockCount = dis.readInt();
+        if (blockSize <= 0 || blockCount != (totalBytes + blockSize - 1) / blockSize) {
+            throw new IOException("Corrupt data: block index does not match the file size.");
+        }
+
+        BlockIndex index = new BlockIndex();
+        index.offsets = new long[blockCount];
+        index.sizes = new int[blockCount];
+        index.rawSizes = new int[blockCount];
+        for (int i = 0; i < blockCount; i++) {
+            index.offsets[i] = dis.readLong();
+            index.sizes[i] = dis.readInt();
+            index.rawSizes[i] = dis.readInt();
+            long expected = Math.min(blockSize, totalBytes - (long) i * blockSize);
+            if (index.rawSizes[i] != expected || index.sizes[i] < 0
+                    || index.offsets[i] < 0 || index.offsets[i] + index.sizes[i] > indexOffset) {
+                throw new IOException("Corrupt data: bad entry for block " + i);
+            }
+        }
+        return index;
+    }
+
+    // Positional write of the whole array (safe to call from several threads at once)
+    static void writeFully(FileChannel channel, long position, byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    // Positional read of exactly 'len' bytes (safe to call from several threads at once)
+    static byte[] readFully(FileChannel channel, long position, int len) throws IOException {
+        byte[] data = new byte[len];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) throw new EOFException("Unexpected End of File at offset " + (position + buffer.position()));
+        }
+        return data;
+    }
+}
@@ -0,0 +1,166 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Table-driven Huffman decoder.
+ * Instead of walking the tree one bit at a time, it peeks a window of bits and
+ * resolves a whole symbol (and its code length) with a single array lookup.
+ * Codes longer than the window continue in a secondary table for that prefix.
+ */
+public class HuffmanDecoder {
+
+    // Width of the primary lookup table (2^11 entries = 8 KB, stays in L1 cache)
+    public static final int TABLE_BITS = 11;
+
+    // Table entry layout:
+    //   > 0 : leaf   -> (symbol << 8) | codeLength
+    //   < 0 : link   -> -((tableId << 4) | tableBits) of a secondary table
+    //   = 0 : no code has this prefix (corrupt data)
+    private final int[][] tables;
+    private final int[] tableBits;
+
+    private HuffmanDecoder(List<int[]> tableList, List<Integer> bitsList) {
+        this.tables = tableList.toArray(new int[0][]);
+        this.tableBits = new int[bitsList.size()];
+        for (int i = 0; i < tableBits.length; i++) {
+            tableBits[i] = bitsList.get(i);
+        }
+    }
+
+    /**
+     * Builds the lookup tables from a Huffman tree (as returned by HuffmanTree.buildTree).
+     */
+    public static HuffmanDecoder fromTree(HuffmanNode root) {
+        List<int[]> tables = new ArrayList<>();
+        List<Integer> bits = new ArrayList<>();
+        if (root != null && !root.isLeaf()) {
+            buildTable(root, tables, bits);
+        }
+        return new HuffmanDecoder(tables, bits);
+    }
+
+    /**
+     * Builds a single lookup table straight from canonical code lengths (no tree needed).
+     * With lengths capped at CodeTable.MAX_CODE_LENGTH the table is at most 2^15 entries,
+     * so every symbol resolves in exactly one lookup.
+     */
+    public static HuffmanDecoder fromCodeLengths(int[] lengths) {
+        List<int[]> tables = new ArrayList<>();
+        List<Integer> bits = new ArrayList<>();
+
+        int maxLength = 0;
+        for (int len : lengths) maxLength = Math.max(maxLength, len);
+
+        if (maxLength > 0) {
+            CodeTable codes = HuffmanTree.generateCanonicalCodes(lengths);
+            int[] table = new int[1 << maxLength];
+            for (int s = 0; s < lengths.length; s++) {
+                int len = lengths[s];
+                if (len == 0) continue;
+                int span = 1 << (maxLength - len);
+                int start = (int) codes.codes[s] << (maxLength - len);
+                for (int i = start; i < start + span; i++) {
+                    table[i] = (s << 8) | len;
+                }
+            }
+            tables.add(table);
+            bits.add(maxLength);
+        }
+        return new HuffmanDecoder(tables, bits);
+    }
+
+    // Creates the table for the subtree below 'node' and returns its id
+    private static int buildTable(HuffmanNode node, List<int[]> tables, List<Integer> bitsList) {
+        int bits = Math.min(TABLE_BITS, height(node));
+        int id = tables.size();
+        int[] table = new int[1 << bits];
+        tables.add(table);
+        bitsList.add(bits);
+        fill(node, 0, 0, bits, table, tables, bitsList);
+        return id;
+    }
+
+    private static void fill(HuffmanNode node, int depth, int prefix, int bits,
+                             int[] table, List<int[]> tables, List<Integer> bitsList) {
+        if (node == null) return; // Unused branch (e.g. single-symbol tree): entries stay 0
+
+        if (node.isLeaf()) {
+            // Every window that starts with this code resolves to this leaf
+            int span = 1 << (bits - depth);
+            int start = prefix << (bits - depth);
+            int entry = (node.data << 8) | depth;
+            for (int i = start; i < start + span; i++) {
+                table[i] = entry;
+            }
+            return;
+        }
+
+        if (depth == bits) {
+            // Code is longer than this table: continue in a secondary table
+            int id = buildTable(node, tables, bitsList);
+            table[prefix] = -((id << 4) | bitsList.get(id));
+            return;
+        }
+
+        fill(node.left, depth + 1, prefix << 1, bits, table, tables, bitsList);
+        fill(node.right, depth + 1, (prefix << 1) | 1, bits, table, tables, bitsList);
+    }
+
+    private static int height(HuffmanNode node) {
+        if (node == null || node.isLeaf()) return 0;
+        return 1 + Math.max(height(node.left), height(node.right));
+    }
+
+    /**
+     * Decodes up to 'count' symbols from the bit stream into 'out'.
+     * @return The number of symbols decoded (less than count only if the input ended early).
+     */
+    public long decode(BitInputStream in, OutputStream out, long count) throws IOException {
+        byte[] chunk = new byte[(int) Math.min(count, 64 * 1024)];
+        long decoded = 0;
+        while (decoded < count) {
+            int want = (int) Math.min(chunk.length, count - decoded);
+            int got = decode(in, chunk, 0, want);
+            out.write(chunk, 0, got);
+            decoded += got;
+            if (got < want) break; // End of file
+        }
+        return decoded;
+    }
+
+    /**
+     * Decodes up to 'len' symbols from the bit stream into dst[off..off+len).
+     * @return The number of symbols decoded (less than len only if the input ended early).
+     */
+    public int decode(BitInputStream in, byte[] dst, int off, int len) throws IOException {
+        if (tables.length == 0) return 0;
+
+        int[] root = tables[0];
+        int rootBits = tableBits[0];
+        int decoded = 0;
+
+        while (decoded < len) {
+            int bits = rootBits;
+            int entry = root[in.peekBits(bits)];
+
+            // Long code: skip the resolved prefix and look in the secondary table
+            while (entry < 0) {
+                if (!in.consume(bits)) return decoded;
+                int id = (-entry) >>> 4;
+                bits = (-entry) & 0xF;
+                entry = tables[id][in.peekBits(bits)];
+            }
+
+            if (entry == 0) {
+                throw new IOException("Corrupt data: invalid Huffman code.");
+            }
+            if (!in.consume(entry & 0xFF)) break; // End of file
+
+            dst[off + decoded] = (byte) (entry >>> 8);
+            decoded++;
+        }
+        return decoded;
+    }
+}
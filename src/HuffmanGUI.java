@@ -1,7 +1,5 @@
 import java.awt.*;
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.filechooser.FileSystemView;
@@ -97,6 +95,9 @@ public class HuffmanGUI extends JFrame {
         encryptBtn.setForeground(Color.WHITE);
         encryptBtn.setFont(new Font("Segoe UI", Font.BOLD, 14));
 
+        JButton onePassBtn = new JButton("⚡ One Pass: COMPRESS + ENCRYPT");
+        onePassBtn.setFont(new Font("Segoe UI", Font.BOLD, 12));
+
         // --- LAYOUT ---
         gbc.gridx = 0; gbc.gridy = 0; panel.add(selectBtn, gbc);
         gbc.gridy = 1; panel.add(inputFileLabel, gbc);
@@ -114,6 +115,10 @@ public class HuffmanGUI extends JFrame {
         gbc.gridy = 9; panel.add(encryptBtn, gbc);
         gbc.gridy = 10; panel.add(new JLabel("<html><i>Secures any file with a password (.enc)</i></html>", SwingConstants.CENTER), gbc);
 
+        gbc.gridy = 11; panel.add(new JSeparator(), gbc);
+        gbc.gridy = 12; panel.add(onePassBtn, gbc);
+        gbc.gridy = 13; panel.add(new JLabel("<html><i>Steps 2 + 3 streamed in one go, no temporary files</i></html>", SwingConstants.CENTER), gbc);
+
         // --- LISTENERS ---
         selectBtn.addActionListener(e -> {
             JFileChooser fc = new JFileChooser(FileSystemView.getFileSystemView().getHomeDirectory());
@@ -133,6 +138,7 @@ public class HuffmanGUI extends JFrame {
         
         compressBtn.addActionListener(e -> startCompressionOnly());
         encryptBtn.addActionListener(e -> startEncryptionOnly());
+        onePassBtn.addActionListener(e -> startOnePassPack());
 
         return panel;
     }
@@ -155,12 +161,16 @@ public class HuffmanGUI extends JFrame {
         decompressBtn.setBackground(new Color(40, 167, 69));
         decompressBtn.setForeground(Color.WHITE);
 
+        JButton onePassBtn = new JButton("⚡ One Pass: DECRYPT + RESTORE (.huff.enc -> Original)");
+
         gbc.gridx = 0; gbc.gridy = 0; panel.add(new JLabel("Step 1: Choose File"), gbc);
         gbc.gridy = 1; panel.add(selectBtn, gbc);
         gbc.gridy = 2; panel.add(decompressFileLabel, gbc);
         gbc.gridy = 3; panel.add(new JSeparator(), gbc);
         gbc.gridy = 4; panel.add(decryptBtn, gbc);
         gbc.gridy = 5; panel.add(decompressBtn, gbc);
+        gbc.gridy = 6; panel.add(new JSeparator(), gbc);
+        gbc.gridy = 7; panel.add(onePassBtn, gbc);
 
         selectBtn.addActionListener(e -> {
             JFileChooser fc = new JFileChooser();
@@ -173,6 +183,7 @@ public class HuffmanGUI extends JFrame {
 
         decryptBtn.addActionListener(e -> startDecryptionOnly());
         decompressBtn.addActionListener(e -> startDecompressionOnly());
+        onePassBtn.addActionListener(e -> startOnePassUnpack());
 
         return panel;
     }
@@ -185,12 +196,19 @@ public class HuffmanGUI extends JFrame {
         gbc.fill = GridBagConstraints.HORIZONTAL;
 
         // Sender
-        JPanel senderPanel = new JPanel(new GridLayout(3, 1, 5, 5));
+        JPanel senderPanel = new JPanel(new GridLayout(4, 1, 5, 5));
         senderPanel.setBorder(BorderFactory.createTitledBorder("Sender Mode"));
         ipField = new JTextField("127.0.0.1");
+        // Transfer modes and their labels, entry by entry
+        int[] modes = {NetworkModule.MODE_PLAIN, NetworkModule.MODE_HUFFMAN,
+                NetworkModule.MODE_RESUMABLE, NetworkModule.MODE_PARALLEL};
+        JComboBox<String> modeBox = new JComboBox<>(new String[]{
+                "Plain", "Compress on the wire (no .huff needed)", "Resumable (checksummed, survives drops)",
+                "Parallel (" + NetworkModule.PARALLEL_STREAMS + " streams)"});
         JButton sendBtn = new JButton("📡 Send Last Processed File");
         senderPanel.add(new JLabel("Receiver IP:"));
         senderPanel.add(ipField);
+        senderPanel.add(modeBox);
         senderPanel.add(sendBtn);
 
         // Receiver
@@ -208,16 +226,19 @@ public class HuffmanGUI extends JFrame {
                 JOptionPane.showMessageDialog(this, "No file selected or generated to send!");
                 return;
             }
-            NetworkModule.sendFile(fileToSend, ipField.getText(), 5000, logArea);
+            int mode = modes[modeBox.getSelectedIndex()];
+            NetworkModule.sendFile(fileToSend, ipField.getText(), 5000, mode, logArea);
         });
 
         startServerBtn.addActionListener(e -> {
             JFileChooser fc = new JFileChooser();
             fc.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
             if (fc.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
-                NetworkModule.startServer(5000, fc.getSelectedFile(), logArea);
-                startServerBtn.setEnabled(false);
-                startServerBtn.setText("Running...");
+                // Received files are reported in the log, the receiver never blocks on a dialog
+                if (NetworkModule.startServer(5000, fc.getSelectedFile(), logArea) != null) {
+                    startServerBtn.setEnabled(false);
+                    startServerBtn.setText("Running...");
+                }
             }
         });
 
@@ -234,7 +255,7 @@ public class HuffmanGUI extends JFrame {
         // SAVE AS DIALOG
         JFileChooser fileChooser = new JFileChooser(selectedInputFile.getParent());
         fileChooser.setDialogTitle("Save Compressed File As");
-        String defaultName = selectedInputFile.getName() + (selectedInputFile.isDirectory() ? ".tar.huff" : ".huff");
+        String defaultName = selectedInputFile.getName() + ".huff";
         fileChooser.setSelectedFile(new File(defaultName));
 
         if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
@@ -251,23 +272,16 @@ public class HuffmanGUI extends JFrame {
             try {
                 long start = System.currentTimeMillis();
                 File input = selectedInputFile;
-                File tempTar = null;
 
-                // 1. If Folder -> Archive
                 if (input.isDirectory()) {
-                    log("📂 Folder detected. Archiving...");
-                    tempTar = new File(input.getParent(), input.getName() + ".tar");
-                    new Archiver().createArchive(input, tempTar);
-                    input = tempTar; // Now we compress the tar
+                    // Folder -> every file compressed on its own, in parallel, straight into the archive
+                    log("📂 Folder detected. Archiving & Compressing...");
+                    new Archiver().createCompressedArchive(input, finalDest, Runtime.getRuntime().availableProcessors());
+                } else {
+                    log("📉 Compressing...");
+                    HuffmanCompressor.compress(input.getAbsolutePath(), finalDest.getAbsolutePath());
                 }
 
-                // 2. Compress
-                log("📉 Compressing...");
-                HuffmanCompressor.compress(input.getAbsolutePath(), finalDest.getAbsolutePath());
-
-                // Cleanup
-                if (tempTar != null) tempTar.delete();
-
                 lastGeneratedFile = finalDest; // Store for encryption step
                 long time = System.currentTimeMillis() - start;
 
@@ -366,7 +380,10 @@ public class HuffmanGUI extends JFrame {
                 File restoredFile = new File(restoredPath);
 
                 // Check for Archive
-                if (restoredFile.getName().endsWith(".tar")) {
+                if (restoredFile.isDirectory()) {
+                    log("✅ Restored Folder: " + restoredFile.getName());
+                } else if (restoredFile.getName().endsWith(".tar")) {
+                    // Older archives: a .tar that was compressed as a single file
                     log("📦 Unpacking Archive...");
                     File outDir = new File(restoredFile.getParent(), restoredFile.getName().replace(".tar", ""));
                     new Unarchiver().unpackArchive(restoredFile, outDir);
@@ -384,6 +401,71 @@ public class HuffmanGUI extends JFrame {
         }).start();
     }
 
+    // ==================== LOGIC: ONE PASS (PIPELINE) ====================
+    private void startOnePassPack() {
+        if (selectedInputFile == null) {
+            JOptionPane.showMessageDialog(this, "Please select a file or folder first.");
+            return;
+        }
+        String password = JOptionPane.showInputDialog(this, "Create Password:");
+        if (password == null || password.isEmpty()) return;
+
+        // ".tar.huff.enc" for folders, so the step-by-step restore knows to unpack it
+        JFileChooser fileChooser = new JFileChooser(selectedInputFile.getParent());
+        fileChooser.setDialogTitle("Save Encrypted File As");
+        String defaultName = selectedInputFile.getName() + (selectedInputFile.isDirectory() ? ".tar.huff.enc" : ".huff.enc");
+        fileChooser.setSelectedFile(new File(defaultName));
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File dest = fileChooser.getSelectedFile();
+        if (!dest.getName().endsWith(".enc")) dest = new File(dest.getAbsolutePath() + ".enc");
+        final File finalDest = dest;
+
+        progressBar.setIndeterminate(true);
+        new Thread(() -> {
+            try {
+                long start = System.currentTimeMillis();
+                log("⚡ Archiving, compressing & encrypting in one pass...");
+                Pipeline.pack(selectedInputFile, finalDest, password);
+                lastGeneratedFile = finalDest;
+                long time = System.currentTimeMillis() - start;
+                SwingUtilities.invokeLater(() -> {
+                    progressBar.setIndeterminate(false);
+                    log("✅ Encrypted: " + finalDest.getName() + " (" + time + "ms)");
+                    JOptionPane.showMessageDialog(this, "Done!\nSaved to: " + finalDest.getAbsolutePath());
+                });
+            } catch (Exception e) { handleError(e); }
+        }).start();
+    }
+
+    private void startOnePassUnpack() {
+        if (selectedDecompressFile == null) return;
+        String name = selectedDecompressFile.getName();
+        if (!name.endsWith(".huff.enc")) {
+            JOptionPane.showMessageDialog(this, "One pass restore needs a .huff.enc file.");
+            return;
+        }
+        String pass = JOptionPane.showInputDialog(this, "Enter Password:");
+        if (pass == null) return;
+
+        // Same naming as the step-by-step restore: "x.tar.huff.enc" is a folder, "x.huff.enc" a file
+        boolean archive = name.endsWith(".tar.huff.enc");
+        String restoredName = name.substring(0, name.length() - (archive ? ".tar.huff.enc" : ".huff.enc").length());
+        File restored = new File(selectedDecompressFile.getParentFile(), restoredName);
+
+        progressBar.setIndeterminate(true);
+        new Thread(() -> {
+            try {
+                log("⚡ Decrypting, decompressing" + (archive ? " & unpacking" : "") + " in one pass...");
+                Pipeline.unpack(selectedDecompressFile, restored, pass, archive);
+                SwingUtilities.invokeLater(() -> {
+                    progressBar.setIndeterminate(false);
+                    log("✅ Restored " + (archive ? "Folder: " : "File: ") + restored.getName());
+                    JOptionPane.showMessageDialog(this, "Restoration Finished!");
+                });
+            } catch (Exception e) { handleError(e); }
+        }).start();
+    }
+
     // ==================== ANALYSIS LOGIC (FIXED) ====================
     private void analyzeFile(boolean visualizeTree) {
         if (selectedInputFile == null) {
@@ -414,11 +496,7 @@ public class HuffmanGUI extends JFrame {
         progressBar.setIndeterminate(true);
         new Thread(() -> {
             try {
-                int[] frequencies = new int[256];
-                try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(finalFile))) {
-                    int b;
-                    while ((b = bis.read()) != -1) frequencies[b]++;
-                }
+                long[] frequencies = FrequencyCounter.count(finalFile);
 
                 HuffmanNode root = HuffmanTree.buildTree(frequencies);
 
@@ -0,0 +1,92 @@
+import java.io.*;
+
+/**
+ * Reads a stream written by HuffmanOutputStream and returns the original bytes.
+ * Blocks are decoded one at a time as they arrive; the total length is never needed.
+ */
+public class HuffmanInputStream extends InputStream {
+
+    // Guard against corrupt frames asking for huge buffers
+    public static final int MAX_BLOCK_SIZE = 64 << 20;
+
+    private final DataInputStream in;
+    private byte[] block = new byte[0];
+    private byte[] encoded = new byte[0];
+    private int pos;
+    private int limit;
+    private boolean finished;
+
+    public HuffmanInputStream(InputStream in) throws IOException {
+        this(in, true);
+    }
+
+    private HuffmanInputStream(InputStream in, boolean readHeader) throws IOException {
+        this.in = new DataInputStream(in);
+
+        // Header: 0 marker + format id
+        if (readHeader) {
+            int marker = this.in.readUnsignedByte();
+            int format = this.in.readUnsignedByte();
+            if (marker != 0 || format != HuffmanCompressor.FORMAT_STREAM) {
+                throw new IOException("Not a Huffman stream.");
+            }
+        }
+    }
+
+    /**
+     * For callers that already read the [0][3] header themselves (e.g. to detect the format).
+     */
+    static HuffmanInputStream afterHeader(InputStream in) throws IOException {
+        return new HuffmanInputStream(in, false);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos == limit && !nextBlock()) return -1;
+        return block[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (pos == limit && !nextBlock()) return -1;
+        int n = Math.min(len, limit - pos);
+        System.arraycopy(block, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return limit - pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // Reads and decodes the next frame. Returns false at the end marker.
+    private boolean nextBlock() throws IOException {
+        if (finished) return false;
+
+        int rawLength = in.readInt();
+        if (rawLength == 0) {
+            finished = true;
+            return false;
+        }
+        int blockLength = in.readInt();
+        if (rawLength < 0 || rawLength > MAX_BLOCK_SIZE || blockLength <= 0 || blockLength > MAX_BLOCK_SIZE + 1) {
+            throw new IOException("Corrupt data: bad frame header.");
+        }
+
+        if (encoded.length < blockLength) encoded = new byte[blockLength];
+        if (block.length < rawLength) block = new byte[rawLength];
+        in.readFully(encoded, 0, blockLength);
+        BlockCodec.decode(encoded, 0, blockLength, block, 0, rawLength);
+
+        pos = 0;
+        limit = rawLength;
+        return true;
+    }
+}
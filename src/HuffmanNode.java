@@ -1,12 +1,12 @@
 public class HuffmanNode implements Comparable<HuffmanNode> {
     
-    public int frequency;
+    public long frequency; // long: a byte can appear more than 2^31 times in a big file
     public int data; // Using int to handle bytes (0-255). -1 indicates an internal node.
     public HuffmanNode left;
     public HuffmanNode right;
 
     // 1. Constructor for Leaf Nodes (Actual data)
-    public HuffmanNode(int data, int frequency) {
+    public HuffmanNode(int data, long frequency) {
         this.data = data;
         this.frequency = frequency;
         this.left = null;
@@ -33,10 +33,11 @@ public class HuffmanNode implements Comparable<HuffmanNode> {
     /**
      * This method allows the PriorityQueue to sort nodes.
      * We want the SMALLEST frequency to be at the top of the queue.
+     * (Long.compare instead of subtracting: the difference can overflow and flip the order.)
      */
     @Override
     public int compareTo(HuffmanNode other) {
-        return this.frequency - other.frequency;
+        return Long.compare(this.frequency, other.frequency);
     }
     
     @Override
@@ -0,0 +1,83 @@
+import java.io.*;
+
+/**
+ * Compresses everything written to it, block by block, into another stream.
+ * Works for data of unknown length (stdin, sockets, pipes, generated data):
+ * nothing is read twice and memory use is one block.
+ *
+ * Stream layout: [0][3] then frames of [int rawLength][int blockLength][block],
+ * ended by a frame with rawLength 0. Each block is a self-contained BlockCodec block.
+ */
+public class HuffmanOutputStream extends OutputStream {
+
+    private final DataOutputStream out;
+    private final byte[] block;
+    private int count;
+    private boolean closed;
+
+    public HuffmanOutputStream(OutputStream out) throws IOException {
+        this(out, HuffmanCompressor.DEFAULT_BLOCK_SIZE);
+    }
+
+    public HuffmanOutputStream(OutputStream out, int blockSize) throws IOException {
+        if (blockSize <= 0 || blockSize > HuffmanInputStream.MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Block size out of range: " + blockSize);
+        }
+        this.out = new DataOutputStream(out);
+        this.block = new byte[blockSize];
+
+        // Header: same 0 marker + format id as the .huff files
+        this.out.writeByte(0);
+        this.out.writeByte(HuffmanCompressor.FORMAT_STREAM);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == block.length) writeBlock();
+        block[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == block.length) writeBlock();
+            int n = Math.min(len, block.length - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Sends the data collected so far as a (possibly short) block, so the reader gets it now.
+     */
+    @Override
+    public void flush() throws IOException {
+        writeBlock();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            writeBlock();
+            out.writeInt(0); // End marker
+            out.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    // Encodes the pending bytes as one frame
+    private void writeBlock() throws IOException {
+        if (count == 0) return;
+        byte[] encoded = BlockCodec.encode(block, 0, count);
+        out.writeInt(count);
+        out.writeInt(encoded.length);
+        out.write(encoded);
+        count = 0;
+    }
+}
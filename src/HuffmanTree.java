@@ -8,6 +8,17 @@ public class HuffmanTree {
      * @return The root node of the Huffman Tree.
      */
     public static HuffmanNode buildTree(int[] frequencies) {
+        long[] counts = new long[frequencies.length];
+        for (int i = 0; i < frequencies.length; i++) {
+            counts[i] = frequencies[i];
+        }
+        return buildTree(counts);
+    }
+
+    /**
+     * Step 1 (64-bit version): same as above, for counts that do not fit in an int.
+     */
+    public static HuffmanNode buildTree(long[] frequencies) {
         PriorityQueue<HuffmanNode> queue = new PriorityQueue<>();
 
         // 1. Create a leaf node for every byte that appears in the file
@@ -81,4 +92,105 @@ public class HuffmanTree {
         // Go Right (Append '1')
         generateRecursive(node.right, currentCode + "1", codes);
     }
+
+    /**
+     * Step 2 (fast version): Generate packed codes (e.g. 'A' -> bits 0b110, length 3)
+     * @param root The root of the tree.
+     * @return A CodeTable where index = byte value.
+     */
+    public static CodeTable generatePackedCodes(HuffmanNode root) {
+        CodeTable table = new CodeTable(new long[256], new int[256]);
+        packRecursive(root, 0L, 0, table);
+        return table;
+    }
+
+    // Same walk as generateRecursive, but the path is kept as bits in a long
+    private static void packRecursive(HuffmanNode node, long code, int length, CodeTable table) {
+        if (node == null) return;
+
+        if (node.isLeaf()) {
+            if (node.data >= 0 && node.data < 256) {
+                table.codes[node.data] = code;
+                table.lengths[node.data] = length;
+            }
+            return;
+        }
+
+        if (length == 64) {
+            throw new IllegalStateException("Huffman code longer than 64 bits.");
+        }
+
+        packRecursive(node.left, code << 1, length + 1, table);
+        packRecursive(node.right, (code << 1) | 1, length + 1, table);
+    }
+
+    /**
+     * Step 3 (canonical mode): Turn the tree into code lengths only.
+     * @return An int array where index = byte value, value = code length (0 = unused).
+     */
+    public static int[] generateCodeLengths(HuffmanNode root) {
+        CodeTable codes = generatePackedCodes(root);
+        return codes.lengths;
+    }
+
+    /**
+     * Caps every code length at maxLength while keeping a valid prefix code.
+     * Codes that are too long are clamped, then the longest codes that can still
+     * grow are lengthened until the Kraft sum fits again (cheapest in extra bits),
+     * and finally any spare room is given back to the shortest (most frequent) codes.
+     */
+    public static int[] limitCodeLengths(int[] lengths, int maxLength) {
+        int[] limited = lengths.clone();
+        long capacity = 1L << maxLength; // Kraft sum scaled by 2^maxLength
+        long kraft = 0;
+
+        for (int s = 0; s < limited.length; s++) {
+            if (limited[s] > maxLength) limited[s] = maxLength;
+            if (limited[s] > 0) kraft += 1L << (maxLength - limited[s]);
+        }
+
+        // 1. Over-subscribed: lengthen the longest codes that are still below the cap
+        while (kraft > capacity) {
+            int pick = -1;
+            for (int s = 0; s < limited.length; s++) {
+                if (limited[s] > 0 && limited[s] < maxLength && (pick == -1 || limited[s] > limited[pick])) {
+                    pick = s;
+                }
+            }
+            kraft -= 1L << (maxLength - limited[pick] - 1);
+            limited[pick]++;
+        }
+
+        // 2. Spare room: shorten codes again, shortest first
+        for (int len = 2; len <= maxLength; len++) {
+            for (int s = 0; s < limited.length; s++) {
+                if (limited[s] == len && kraft + (1L << (maxLength - len)) <= capacity) {
+                    kraft += 1L << (maxLength - len);
+                    limited[s]--;
+                }
+            }
+        }
+        return limited;
+    }
+
+    /**
+     * Assigns canonical codes from code lengths: shorter codes first, ties by byte value.
+     * Both sides can rebuild the exact same codes from the lengths alone, no tree needed.
+     */
+    public static CodeTable generateCanonicalCodes(int[] lengths) {
+        CodeTable table = new CodeTable(new long[256], lengths.clone());
+        int maxLength = 0;
+        for (int len : lengths) maxLength = Math.max(maxLength, len);
+
+        long code = 0;
+        for (int len = 1; len <= maxLength; len++) {
+            for (int s = 0; s < lengths.length; s++) {
+                if (lengths[s] == len) {
+                    table.codes[s] = code++;
+                }
+            }
+            code <<= 1;
+        }
+        return table;
+    }
 }
\ No newline at end of file
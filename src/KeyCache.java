@@ -0,0 +1,144 @@
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Bounded, expiring in-memory cache of password-derived keys, so that a batch of files sharing
+ * a password and salt pays for the (deliberately slow) key derivation only once per session.
+ *
+ * Passwords are never kept: entries are keyed by a "password handle" (an HMAC of the password
+ * under a random per-process secret) plus the salt and iteration count. Entries expire a fixed
+ * time after they were derived, and the least recently used ones are dropped when it is full.
+ */
+class KeyCache {
+
+    // Slow part of getting a key (e.g. PBKDF2), only run on a cache miss
+    interface Derivation {
+        SecretKeySpec derive() throws GeneralSecurityException;
+    }
+
+    private static class Entry<T> {
+        final T value;
+        final long expires;
+
+        Entry(T value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+    private final int capacity;
+    private final long ttlMillis;
+    private final SecretKeySpec handleSecret;
+    private final SecureRandom random = new SecureRandom();
+
+    // Access order: the eldest entry is the least recently used one
+    private final LinkedHashMap<String, Entry<FutureTask<SecretKeySpec>>> keys;
+    // Password handle -> salt used for new files in this session
+    private final LinkedHashMap<String, Entry<byte[]>> salts;
+
+    KeyCache(int capacity, long ttlMillis) {
+        this.capacity = capacity;
+        this.ttlMillis = ttlMillis;
+        byte[] secret = new byte[32];
+        random.nextBytes(secret);
+        this.handleSecret = new SecretKeySpec(secret, "HmacSHA256");
+        this.keys = new LinkedHashMap<>(16, 0.75f, true);
+        this.salts = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Stands in for the password in the cache (same password, same handle, for this process only).
+     */
+    String handle(String password) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(handleSecret);
+        try {
+            return Base64.getEncoder().encodeToString(mac.doFinal(password.getBytes("UTF-8")));
+        } catch (java.io.UnsupportedEncodingException e) {
+            throw new IllegalStateException(e); // UTF-8 is always there
+        }
+    }
+
+    /**
+     * Salt for files encrypted under this password: the same one for the whole session,
+     * so a batch of files shares one derived key. A new one is drawn once it expires.
+     */
+    synchronized byte[] sessionSalt(String handle, int length) {
+        long now = System.currentTimeMillis();
+        evictExpired(salts, now);
+        Entry<byte[]> entry = salts.get(handle);
+        if (entry == null) {
+            byte[] salt = new byte[length];
+            random.nextBytes(salt);
+            entry = new Entry<>(salt, now + ttlMillis);
+            put(salts, handle, entry);
+        }
+        return entry.value.clone();
+    }
+
+    /**
+     * The key for (password handle, salt, iterations), derived at most once while cached.
+     * Threads asking for the same key at the same time wait for a single derivation.
+     */
+    SecretKeySpec get(String handle, byte[] salt, int iterations, Derivation derivation) throws GeneralSecurityException {
+        String id = handle + ':' + Base64.getEncoder().encodeToString(salt) + ':' + iterations;
+
+        // 1. Find or reserve the entry
+        Entry<FutureTask<SecretKeySpec>> entry;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            evictExpired(keys, now);
+            entry = keys.get(id);
+            if (entry == null) {
+                entry = new Entry<>(new FutureTask<>(derivation::derive), now + ttlMillis);
+                put(keys, id, entry);
+            }
+        }
+
+        // 2. Derive outside the lock (a no-op if someone else already did or is doing it)
+        entry.value.run();
+        try {
+            return entry.value.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeneralSecurityException("Interrupted while deriving a key.");
+        } catch (ExecutionException e) {
+            synchronized (this) {
+                keys.remove(id, entry); // Don't cache failures
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof GeneralSecurityException) throw (GeneralSecurityException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new GeneralSecurityException(cause);
+        }
+    }
+
+    /**
+     * Forgets every key and salt (e.g. at the end of a batch).
+     */
+    synchronized void clear() {
+        keys.clear();
+        salts.clear();
+    }
+
+    private <T> void put(LinkedHashMap<String, Entry<T>> map, String id, Entry<T> entry) {
+        map.put(id, entry);
+        if (map.size() > capacity) {
+            Iterator<String> eldest = map.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private static <T> void evictExpired(Map<String, Entry<T>> map, long now) {
+        map.values().removeIf(entry -> entry.expires <= now);
+    }
+}
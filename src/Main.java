@@ -3,6 +3,12 @@ import javax.swing.UIManager;
 
 public class Main {
     public static void main(String[] args) {
+
+        // 0. Arguments given -> headless command line, the GUI (and FlatLaf) is never loaded
+        if (args.length > 0) {
+            HuffmanCLI.main(args);
+            return;
+        }
         
         // 1. Try to Apply the FlatLaf Dark Theme
         try {
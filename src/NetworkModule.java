@@ -1,74 +1,403 @@
 import java.io.*;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
 import javax.swing.*;
 
 public class NetworkModule {
 
+    public static final int DEFAULT_PORT = 5000;
+
+    // Wire protocol. Plain transfers keep the original header ([UTF fileName][long size][bytes]),
+    // so older receivers still understand them. Every other mode starts with MAGIC and a mode byte:
+    // [int MAGIC][byte mode][UTF fileName][long size][rest of that mode]
+    static final int MAGIC = 0x4855464E;    // "HUFN"
+    static final int MODE_PLAIN = 0;        // Never sent after MAGIC, it has the short header
+    static final int MODE_HUFFMAN = 1;      // Body: a HuffmanOutputStream stream of the file
+    static final int MODE_RESUMABLE = 2;    // See sendResumable()
+    static final int MODE_PARALLEL = 3;     // See sendParallel()
+    static final int ACK = 1;               // Receiver's "file complete and in place"
+
+    // Smaller than on disk, so the receiver can start decoding while the next block is encoded
+    private static final int WIRE_BLOCK_SIZE = 256 * 1024;
+
+    // Resumable transfers
+    static final int RESUME_CHUNK_SIZE = 1 << 20;  // Unit of checksumming and of resuming
+    private static final int RESUME_ATTEMPTS = 5;  // Connections tried before giving up
+    private static final long RETRY_DELAY_MS = 1000; // Doubled after every failed attempt
+    private static final int MAX_STALLS = 12;         // Writes in a row that move nothing (~4 s of pauses)
+
+    // Parallel transfers
+    public static final int PARALLEL_STREAMS = 4;     // What the GUI uses
+    private static final long MIN_RANGE = 1 << 20;    // Smaller files get fewer streams
+    static final long PROGRESS_STEP = 4 << 20;        // Progress is reported every 4 MB per stream
+
     // 1. SENDER LOGIC (Client)
     public static void sendFile(File file, String ipAddress, int port, JTextArea logArea) {
+        sendFile(file, ipAddress, port, MODE_PLAIN, logArea);
+    }
+
+    /**
+     * @param mode MODE_PLAIN, MODE_HUFFMAN (compressed on the wire), MODE_RESUMABLE or MODE_PARALLEL
+     */
+    public static void sendFile(File file, String ipAddress, int port, int mode, JTextArea logArea) {
         new Thread(() -> {
             try {
-                logArea.append("📡 Connecting to " + ipAddress + ":" + port + "...\n");
-                try (Socket socket = new Socket(ipAddress, port);
-                     FileInputStream fis = new FileInputStream(file);
-                     DataOutputStream dos = new DataOutputStream(socket.getOutputStream())) {
+                log(logArea, "📡 Connecting to " + ipAddress + ":" + port + "...");
+                if (mode == MODE_RESUMABLE) {
+                    log(logArea, "🚀 Sending data (resumable)...");
+                    sendResumable(file, ipAddress, port);
+                } else if (mode == MODE_PARALLEL) {
+                    log(logArea, "🚀 Sending data over " + PARALLEL_STREAMS + " connections...");
+                    sendParallel(file, ipAddress, port, PARALLEL_STREAMS, logTo(logArea));
+                } else {
+                    log(logArea, mode == MODE_HUFFMAN ? "🚀 Sending data (compressed on the fly)..." : "🚀 Sending data...");
+                    send(file, ipAddress, port, mode == MODE_HUFFMAN);
+                }
+                log(logArea, "✅ Transfer Complete!");
+            } catch (Exception e) {
+                log(logArea, "❌ Network Error: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }).start();
+    }
 
-                    // Send Filename and Size first
-                    dos.writeUTF(file.getName());
-                    dos.writeLong(file.length());
+    /**
+     * Sends one file to a FileReceiver and returns when it has all been handed to the network.
+     */
+    public static void send(File file, String host, int port) throws IOException {
+        send(file, host, port, false);
+    }
 
-                    byte[] buffer = new byte[4096];
-                    int read;
-                    long totalSent = 0;
-                    long fileSize = file.length();
+    /**
+     * @param compress Huffman-encode the file block by block on the way out: the receiver decodes
+     *                 each block as it arrives, and there is no .huff file on either end
+     */
+    public static void send(File file, String host, int port, boolean compress) throws IOException {
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             SocketChannel socket = SocketChannel.open(new InetSocketAddress(host, port))) {
+            long size = in.size();
+
+            // Send Filename and Size first
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(headerBytes);
+            if (compress) {
+                dos.writeInt(MAGIC);
+                dos.writeByte(MODE_HUFFMAN);
+            }
+            dos.writeUTF(file.getName());
+            dos.writeLong(size);
+            writeFully(socket, ByteBuffer.wrap(headerBytes.toByteArray()));
 
-                    logArea.append("🚀 Sending data...\n");
+            if (compress) {
+                // Then the data, encoded block by block
+                try (InputStream fis = Channels.newInputStream(in);
+                     OutputStream body = new HuffmanOutputStream(
+                             new BufferedOutputStream(Channels.newOutputStream(socket), 1 << 16), WIRE_BLOCK_SIZE)) {
+                    byte[] buffer = new byte[1 << 16];
+                    int read;
                     while ((read = fis.read(buffer)) > 0) {
-                        dos.write(buffer, 0, read);
-                        totalSent += read;
+                        body.write(buffer, 0, read);
                     }
-                    logArea.append("✅ Transfer Complete!\n");
+                } // Last block + end marker
+            } else {
+                // Then the data, straight from the page cache to the socket (sendfile)
+                sendRange(in, 0, size, socket);
+            }
+        }
+    }
+
+    /**
+     * Sends a (big) file in checksummed chunks, straight from the page cache (FileChannel.transferTo).
+     * If the connection drops it reconnects, the receiver tells how much it already has verified,
+     * and only the rest is sent again. That also works after either side was restarted,
+     * as long as the file did not change (same size and modification time).
+     *
+     * [MAGIC][MODE_RESUMABLE][UTF fileName][long size][long lastModified][int chunkSize]
+     *   <- [long verifiedBytes]
+     * then chunks from there on: [int length][int crc32][length bytes]
+     *   <- [byte ACK] once the file is complete and in place
+     */
+    public static void sendResumable(File file, String host, int port) throws IOException {
+        if (!file.isFile()) throw new FileNotFoundException("Not a file: " + file);
+        IOException lastError = null;
+        for (int attempt = 0; attempt < RESUME_ATTEMPTS; attempt++) {
+            if (attempt > 0) {
+                try {
+                    Thread.sleep(RETRY_DELAY_MS << (attempt - 1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting to resume " + file.getName());
                 }
-            } catch (Exception e) {
-                logArea.append("❌ Network Error: " + e.getMessage() + "\n");
-                e.printStackTrace();
             }
-        }).start();
+            try {
+                sendResumableOnce(file, host, port);
+                return;
+            } catch (IOException e) {
+                lastError = e; // Try again, from wherever the receiver got to
+            }
+        }
+        throw lastError;
+    }
+
+    private static void sendResumableOnce(File file, String host, int port) throws IOException {
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             SocketChannel socket = SocketChannel.open(new InetSocketAddress(host, port))) {
+            long size = in.size();
+
+            // 1. Header
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(headerBytes);
+            dos.writeInt(MAGIC);
+            dos.writeByte(MODE_RESUMABLE);
+            dos.writeUTF(file.getName());
+            dos.writeLong(size);
+            dos.writeLong(file.lastModified());
+            dos.writeInt(RESUME_CHUNK_SIZE);
+            writeFully(socket, ByteBuffer.wrap(headerBytes.toByteArray()));
+
+            // 2. Handshake: the receiver says where to go on
+            DataInputStream reply = new DataInputStream(Channels.newInputStream(socket));
+            long position = reply.readLong();
+            if (position < 0 || position > size) {
+                throw new IOException("Receiver asked to resume at " + position + " of " + size + " bytes.");
+            }
+
+            // 3. Chunks: the checksum is computed from a reused buffer, the data itself goes out zero-copy
+            ByteBuffer chunk = ByteBuffer.allocateDirect(RESUME_CHUNK_SIZE);
+            ByteBuffer chunkHeader = ByteBuffer.allocate(8);
+            CRC32 crc = new CRC32();
+            while (position < size) {
+                int length = (int) Math.min(RESUME_CHUNK_SIZE, size - position);
+                chunk.clear();
+                chunk.limit(length);
+                readFully(in, chunk, position);
+                crc.reset();
+                crc.update(chunk);
+
+                chunkHeader.clear();
+                chunkHeader.putInt(length).putInt((int) crc.getValue()).flip();
+                writeFully(socket, chunkHeader);
+                sendRange(in, position, length, socket);
+                position += length;
+            }
+
+            // 4. Done once the receiver has it all in place
+            if (reply.readUnsignedByte() != ACK) {
+                throw new IOException("Receiver did not confirm " + file.getName());
+            }
+        }
+    }
+
+    /**
+     * Splits the file into byte ranges and sends them over 'streams' connections at once, for links
+     * a single TCP stream can't fill (high bandwidth, high latency). Every range goes out with
+     * transferTo, and the receiver writes it at its own offset into a preallocated file.
+     * Each stream's progress is reported to 'listener' (may be null).
+     *
+     * Every connection: [MAGIC][MODE_PARALLEL][UTF fileName][long size][long lastModified]
+     *                   [long transferId][int streams][int stream][long offset][long length][data]
+     *   <- [byte ACK] once that range is written (for the last one: once the file is complete)
+     */
+    public static void sendParallel(File file, String host, int port, int streams, TransferListener listener) throws IOException {
+        TransferListener events = (listener != null) ? listener : new TransferListener() { };
+        long start = System.nanoTime();
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = in.size();
+            int count = (int) Math.max(1, Math.min(streams, (size + MIN_RANGE - 1) / MIN_RANGE));
+            long transferId = ThreadLocalRandom.current().nextLong(); // Ties the connections together
+
+            // One thread per stream, all reading the same file with positional transfers
+            ExecutorService pool = Executors.newFixedThreadPool(count);
+            try {
+                CompletionService<Void> running = new ExecutorCompletionService<>(pool);
+                for (int i = 0; i < count; i++) {
+                    final int stream = i;
+                    final long offset = rangeStart(size, count, i);
+                    final long length = rangeStart(size, count, i + 1) - offset;
+                    running.submit(() -> {
+                        sendStream(in, file, size, host, port, transferId, count, stream, offset, length, events);
+                        return null;
+                    });
+                }
+                // The first failure stops the rest (finally: their threads are interrupted)
+                for (int i = 0; i < count; i++) {
+                    Tasks.await(running.take());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while sending " + file.getName());
+            } finally {
+                pool.shutdownNow();
+            }
+            events.fileSent(file, size, System.nanoTime() - start);
+        }
+    }
+
+    // One connection of a parallel transfer: the range [offset, offset + length)
+    private static void sendStream(FileChannel in, File file, long size, String host, int port, long transferId,
+                                   int streams, int stream, long offset, long length, TransferListener listener) throws IOException {
+        try (SocketChannel socket = SocketChannel.open(new InetSocketAddress(host, port))) {
+            // 1. Header
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(headerBytes);
+            dos.writeInt(MAGIC);
+            dos.writeByte(MODE_PARALLEL);
+            dos.writeUTF(file.getName());
+            dos.writeLong(size);
+            dos.writeLong(file.lastModified());
+            dos.writeLong(transferId);
+            dos.writeInt(streams);
+            dos.writeInt(stream);
+            dos.writeLong(offset);
+            dos.writeLong(length);
+            writeFully(socket, ByteBuffer.wrap(headerBytes.toByteArray()));
+
+            // 2. The range, a progress step at a time
+            long sent = 0;
+            while (sent < length) {
+                long step = Math.min(PROGRESS_STEP, length - sent);
+                sendRange(in, offset + sent, step, socket);
+                sent += step;
+                listener.streamProgress(file.getName(), stream, sent, length);
+            }
+
+            // 3. Written on the other end
+            DataInputStream reply = new DataInputStream(Channels.newInputStream(socket));
+            if (reply.readUnsignedByte() != ACK) {
+                throw new IOException("Receiver did not confirm stream " + stream + " of " + file.getName());
+            }
+        }
+    }
+
+    // Where stream 'stream' of 'streams' starts (equal ranges, the last one shorter); the receiver
+    // only accepts the ranges this hands out
+    static long rangeStart(long size, int streams, int stream) {
+        long rangeSize = (size + streams - 1) / streams;
+        return Math.min(size, stream * rangeSize);
+    }
+
+    // --- Channel helpers ---
+
+    /**
+     * Sends file bytes [position, position + count) with transferTo (no copy through the JVM).
+     * A channel that takes nothing (non-blocking with a full buffer, or a stalled receiver) gets
+     * a few growing pauses, then the send fails instead of spinning.
+     */
+    static void sendRange(FileChannel in, long position, long count, WritableByteChannel out) throws IOException {
+        long end = position + count;
+        int stalls = 0;
+        while (position < end) {
+            long n = in.transferTo(position, end - position, out);
+            if (n > 0) {
+                position += n;
+                stalls = 0;
+                continue;
+            }
+            if (position >= in.size()) {
+                throw new EOFException("File ended at " + position + " bytes (did it shrink?).");
+            }
+            backOff(++stalls);
+        }
+    }
+
+    static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+        int stalls = 0;
+        while (buffer.hasRemaining()) {
+            if (out.write(buffer) > 0) {
+                stalls = 0;
+            } else {
+                backOff(++stalls);
+            }
+        }
+    }
+
+    // After the n-th write in a row that moved nothing: wait 1, 2, 4 ... ms, or give up
+    private static void backOff(int stalls) throws IOException {
+        if (stalls > MAX_STALLS) {
+            throw new IOException("Receiver took no data for " + MAX_STALLS + " attempts, giving up.");
+        }
+        try {
+            Thread.sleep(1L << (stalls - 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the receiver.");
+        }
+    }
+
+    // Fills 'buffer' from the file at 'position' and flips it
+    private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = in.read(buffer, position);
+            if (n < 0) throw new EOFException("File ended at " + position + " bytes (did it shrink?).");
+            position += n;
+        }
+        buffer.flip();
     }
 
     // 2. RECEIVER LOGIC (Server)
-    public static void startServer(int port, File saveDir, JTextArea logArea) {
-        new Thread(() -> {
-            try (ServerSocket serverSocket = new ServerSocket(port)) {
-                logArea.append("🎧 Waiting for files on port " + port + "...\n");
-                
-                while (true) {
-                    Socket socket = serverSocket.accept();
-                    logArea.append("🔗 Connection from " + socket.getInetAddress() + "\n");
-                    
-                    try (DataInputStream dis = new DataInputStream(socket.getInputStream())) {
-                        String fileName = dis.readUTF();
-                        long fileSize = dis.readLong();
-                        
-                        File saveFile = new File(saveDir, fileName);
-                        try (FileOutputStream fos = new FileOutputStream(saveFile)) {
-                            byte[] buffer = new byte[4096];
-                            int read;
-                            long remaining = fileSize;
-                            
-                            while (remaining > 0 && (read = dis.read(buffer, 0, (int)Math.min(buffer.length, remaining))) > 0) {
-                                fos.write(buffer, 0, read);
-                                remaining -= read;
-                            }
-                        }
-                        logArea.append("💾 Received: " + fileName + "\n");
-                        JOptionPane.showMessageDialog(null, "File Received: " + fileName);
-                    }
+    /**
+     * Starts a receiver that logs every event to 'logArea' (many senders can upload at once).
+     * @return The running receiver (close() stops it), or null if the port could not be opened
+     */
+    public static FileReceiver startServer(int port, File saveDir, JTextArea logArea) {
+        try {
+            return new FileReceiver(port, saveDir, logTo(logArea));
+        } catch (IOException e) {
+            log(logArea, "❌ Server Error: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Turns receiver events into log lines (on the event thread)
+    private static TransferListener logTo(JTextArea logArea) {
+        return new TransferListener() {
+            @Override
+            public void serverStarted(int port) {
+                log(logArea, "🎧 Waiting for files on port " + port + "...");
+            }
+
+            @Override
+            public void connectionAccepted(SocketAddress from) {
+                log(logArea, "🔗 Connection from " + from);
+            }
+
+            @Override
+            public void fileReceived(File file, long bytes, long nanos) {
+                log(logArea, "💾 Received: " + file.getName() + " (" + bytes + " bytes)");
+            }
+
+            @Override
+            public void transferResumed(String name, long verifiedBytes, long size) {
+                log(logArea, "⏯ Resuming " + name + " at " + verifiedBytes + " of " + size + " bytes");
+            }
+
+            @Override
+            public void streamProgress(String name, int stream, long done, long length) {
+                if (done == length) {
+                    log(logArea, "📶 " + name + ": stream " + stream + " done (" + length + " bytes)");
                 }
-            } catch (Exception e) {
-                logArea.append("❌ Server Error: " + e.getMessage() + "\n");
             }
-        }).start();
+
+            @Override
+            public void transferFailed(String name, Exception error) {
+                log(logArea, "❌ Server Error" + (name != null ? " (" + name + ")" : "") + ": " + error.getMessage());
+            }
+        };
+    }
+
+    private static void log(JTextArea logArea, String msg) {
+        SwingUtilities.invokeLater(() -> logArea.append(msg + "\n"));
     }
-}
\ No newline at end of file
+}
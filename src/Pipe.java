@@ -0,0 +1,179 @@
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded in-memory pipe between two threads: one writes into sink(), the other reads from source().
+ * Data moves in chunks through a small blocking queue, so a fast writer waits for a slow reader
+ * instead of filling up memory (and unlike PipedInputStream there is no 1 KB buffer to fight over).
+ *
+ * If either side fails, fail() wakes up the other one, which then throws instead of hanging.
+ * A reader that closes early (it has all it needs) does not fail the writer: the rest is dropped.
+ */
+public class Pipe {
+
+    private static final byte[] END = new byte[0]; // Queued by sink().close()
+    private static final long WAIT_MS = 100;       // How often a blocked side checks for a failure
+
+    private final BlockingQueue<byte[]> chunks;
+    private final int chunkSize;
+    private volatile Throwable failure;
+    private volatile boolean readerClosed;
+
+    private final Sink sink;
+    private final Source source;
+
+    public Pipe() {
+        this(64 * 1024, 16); // 1 MB in flight
+    }
+
+    public Pipe(int chunkSize, int capacity) {
+        this.chunkSize = chunkSize;
+        this.chunks = new ArrayBlockingQueue<>(capacity);
+        this.sink = new Sink(); // After chunkSize is set: the sink sizes its buffer from it
+        this.source = new Source();
+    }
+
+    public OutputStream sink() {
+        return sink;
+    }
+
+    public InputStream source() {
+        return source;
+    }
+
+    /**
+     * Aborts the pipe: both sides throw from now on. The first cause is kept.
+     */
+    public void fail(Throwable cause) {
+        if (failure == null) failure = cause;
+        chunks.clear(); // A writer waiting for room wakes up and sees the failure
+    }
+
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable cause = failure;
+        if (cause != null) {
+            throw new IOException("Pipeline aborted: " + cause.getMessage(), cause);
+        }
+    }
+
+    private class Sink extends OutputStream {
+        private byte[] buffer = new byte[chunkSize];
+        private int count;
+        private boolean closed;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) send();
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) send();
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) send();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            flush();
+            put(END);
+            closed = true;
+        }
+
+        // Hands the current chunk to the reader and starts a new one
+        private void send() throws IOException {
+            byte[] chunk = (count == buffer.length) ? buffer : Arrays.copyOf(buffer, count);
+            put(chunk);
+            if (chunk == buffer) buffer = new byte[chunkSize];
+            count = 0;
+        }
+
+        private void put(byte[] chunk) throws IOException {
+            try {
+                checkFailure();
+                while (!readerClosed && !chunks.offer(chunk, WAIT_MS, TimeUnit.MILLISECONDS)) {
+                    checkFailure();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing to a pipe.");
+            }
+        }
+    }
+
+    private class Source extends InputStream {
+        private byte[] chunk = new byte[0];
+        private int pos;
+        private boolean ended;
+
+        @Override
+        public int read() throws IOException {
+            if (!next()) return -1;
+            return chunk[pos++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!next()) return -1;
+            int n = Math.min(len, chunk.length - pos);
+            System.arraycopy(chunk, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return chunk.length - pos;
+        }
+
+        @Override
+        public void close() {
+            // Nobody reads anymore: the writer must not wait for room forever
+            readerClosed = true;
+            chunks.clear();
+        }
+
+        // Makes sure there is something left in 'chunk', false at the end of the data
+        private boolean next() throws IOException {
+            if (pos < chunk.length) return true;
+            if (ended) return false;
+            try {
+                byte[] received;
+                while ((received = chunks.poll(WAIT_MS, TimeUnit.MILLISECONDS)) == null) {
+                    checkFailure();
+                }
+                checkFailure();
+                if (received == END) {
+                    ended = true;
+                    return false;
+                }
+                chunk = received;
+                pos = 0;
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading from a pipe.");
+            }
+        }
+    }
+}
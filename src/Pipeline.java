@@ -0,0 +1,171 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One-pass secure packing: archive -> Huffman -> AES and back, without temporary files.
+ * Every stage runs on its own thread and hands its output to the next one through a bounded
+ * in-memory Pipe, so the stages overlap and only the final result touches the disk.
+ *
+ * The result is the same as the step-by-step workflow (Archiver stream, compressed as a
+ * FORMAT_STREAM .huff, encrypted by CryptoModule), so either end can also be done step by step.
+ */
+public class Pipeline {
+
+    // One step of a pipeline (reads the previous pipe, writes the next one and closes it)
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    /**
+     * Folder: archive -> compress -> encrypt.  File: compress -> encrypt.
+     */
+    public static void pack(File source, File encryptedFile, String password) throws Exception {
+        Pipe compressed = new Pipe();
+        Stage encrypt = () -> CryptoModule.encrypt(compressed.source(), new FileOutputStream(encryptedFile), password);
+        try {
+            if (source.isDirectory()) {
+                Pipe archived = new Pipe();
+                run(new Pipe[]{archived, compressed}, encrypt,
+                        () -> new Archiver().createArchive(source, archived.sink()),
+                        () -> HuffmanCompressor.compress(archived.source(), compressed.sink()));
+            } else {
+                run(new Pipe[]{compressed}, encrypt,
+                        () -> {
+                            try (InputStream in = new FileInputStream(source)) {
+                                HuffmanCompressor.compress(in, compressed.sink());
+                            }
+                        });
+            }
+        } catch (Exception e) {
+            encryptedFile.delete(); // Don't leave half a file behind
+            throw e;
+        }
+    }
+
+    /**
+     * The way back: decrypt -> decompress, then unarchive into 'destination' (a folder) if
+     * 'archive' is set, otherwise write the single restored file to 'destination'.
+     * On failure (e.g. a wrong password) nothing half-restored is left behind: the file, or the
+     * folder if this call created it (files unpacked into a folder that already existed stay).
+     */
+    public static void unpack(File encryptedFile, File destination, String password, boolean archive) throws Exception {
+        Pipe decrypted = new Pipe();
+        Stage decrypt = () -> CryptoModule.decrypt(new FileInputStream(encryptedFile), decrypted.sink(), password);
+        if (archive) {
+            Pipe restored = new Pipe();
+            boolean created = !destination.exists();
+            try {
+                run(new Pipe[]{decrypted, restored},
+                        () -> new Unarchiver().unpackArchive(restored.source(), destination),
+                        decrypt,
+                        () -> {
+                            try (OutputStream out = restored.sink()) {
+                                HuffmanCompressor.decompress(decrypted.source(), out);
+                            }
+                        });
+            } catch (Exception e) {
+                if (created) deleteTree(destination);
+                throw e;
+            }
+        } else {
+            try {
+                run(new Pipe[]{decrypted},
+                        () -> {
+                            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(destination), 1 << 16)) {
+                                HuffmanCompressor.decompress(decrypted.source(), out);
+                            }
+                        },
+                        decrypt);
+            } catch (Exception e) {
+                destination.delete();
+                throw e;
+            }
+        }
+    }
+
+    private static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) deleteTree(child);
+        }
+        file.delete();
+    }
+
+    /**
+     * Starts 'stages' on threads of their own and runs 'last' on this thread, then waits for all.
+     * The first failure aborts every pipe (so no stage hangs). The one thrown is the failure of the
+     * stage furthest upstream that did not fail because of another: a stage that closes its output
+     * on the way out looks like a clean end of data downstream, which may then fail first.
+     */
+    private static void run(Pipe[] pipes, Stage last, Stage... stages) throws Exception {
+        AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+        Throwable[] failures = new Throwable[stages.length + 1]; // In pipeline order, 'last' at the end
+
+        // 1. Start the stages
+        List<FutureTask<Void>> running = new ArrayList<>(stages.length);
+        for (int i = 0; i < stages.length; i++) {
+            FutureTask<Void> task = new FutureTask<>(guard(stages[i], pipes, firstFailure, failures, i));
+            Thread thread = new Thread(task, "pipeline-stage-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+            running.add(task);
+        }
+
+        // 2. The last stage runs right here
+        try {
+            guard(last, pipes, firstFailure, failures, stages.length).call();
+        } catch (Exception | Error e) {
+            // Recorded in firstFailure
+        }
+
+        // 3. Wait for the others
+        for (FutureTask<Void> task : running) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                // Recorded in firstFailure
+            }
+        }
+
+        Throwable failure = firstFailure.get();
+        for (Throwable stageFailure : failures) {
+            if (stageFailure != null && !isAbort(stageFailure, pipes)) {
+                failure = stageFailure;
+                break;
+            }
+        }
+        if (failure instanceof Exception) throw (Exception) failure;
+        if (failure instanceof Error) throw (Error) failure;
+    }
+
+    private static Callable<Void> guard(Stage stage, Pipe[] pipes, AtomicReference<Throwable> firstFailure,
+                                        Throwable[] failures, int index) {
+        return () -> {
+            try {
+                stage.run();
+            } catch (Exception | Error e) {
+                failures[index] = e;
+                firstFailure.compareAndSet(null, e);
+                for (Pipe pipe : pipes) {
+                    pipe.fail(firstFailure.get());
+                }
+                throw e;
+            }
+            return null;
+        };
+    }
+
+    // True for the "Pipeline aborted" error a stage gets because another stage failed
+    private static boolean isAbort(Throwable failure, Pipe[] pipes) {
+        for (Pipe pipe : pipes) {
+            Throwable cause = pipe.getFailure();
+            if (cause != null && cause != failure && failure.getCause() == cause) return true;
+        }
+        return false;
+    }
+}
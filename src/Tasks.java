@@ -0,0 +1,36 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Waiting for work handed to a pool, for any module that does I/O on worker threads
+ * (codec blocks, encrypted chunks, network streams, batch jobs).
+ */
+final class Tasks {
+
+    private Tasks() {
+    }
+
+    /**
+     * Waits for a task and passes its IOException through unchanged.
+     */
+    static <T> T await(Future<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a task.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            // ForkJoinPool wraps a Callable's checked exception in RuntimeExceptions: dig it out
+            for (Throwable wrapped = cause; wrapped != null; wrapped = wrapped.getCause()) {
+                if (wrapped instanceof IOException) throw (IOException) wrapped;
+                if (!(wrapped instanceof RuntimeException)) break;
+            }
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+}
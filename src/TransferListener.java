@@ -0,0 +1,42 @@
+import java.io.File;
+import java.net.SocketAddress;
+
+/**
+ * Gets told what network transfers are doing, instead of them popping up dialogs.
+ * Methods are called from network threads (several at once when several files arrive together):
+ * a GUI has to hand them over to the event thread itself. They all do nothing by default.
+ */
+public interface TransferListener {
+
+    default void serverStarted(int port) {
+    }
+
+    default void connectionAccepted(SocketAddress from) {
+    }
+
+    default void fileReceived(File file, long bytes, long nanos) {
+    }
+
+    /**
+     * A resumable transfer picks up where an earlier connection left off.
+     */
+    default void transferResumed(String name, long verifiedBytes, long size) {
+    }
+
+    default void fileSent(File file, long bytes, long nanos) {
+    }
+
+    /**
+     * Progress of one connection of a parallel transfer (sender and receiver side).
+     * @param stream 0 .. streams-1
+     * @param done   Bytes of this stream's range transferred so far (== length when it is finished)
+     */
+    default void streamProgress(String name, int stream, long done, long length) {
+    }
+
+    /**
+     * @param name The file being transferred, null if the failure came before its name was known
+     */
+    default void transferFailed(String name, Exception error) {
+    }
+}
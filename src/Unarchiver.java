@@ -1,4 +1,17 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
 
 public class Unarchiver {
 
@@ -8,12 +21,19 @@ public class Unarchiver {
      * @param destFolder The folder where files should be extracted
      */
     public void unpackArchive(File archiveFile, File destFolder) throws IOException {
+        unpackArchive(new FileInputStream(archiveFile), destFolder);
+    }
+
+    /**
+     * Same as unpackArchive(File, File), reading the archive from a stream
+     * (e.g. the last stage of a Pipeline). Closes 'source' when done.
+     */
+    public void unpackArchive(InputStream source, File destFolder) throws IOException {
         if (!destFolder.exists()) {
             destFolder.mkdirs(); // Create destination if it doesn't exist
         }
 
-        try (FileInputStream fis = new FileInputStream(archiveFile);
-             DataInputStream in = new DataInputStream(new BufferedInputStream(fis))) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(source))) {
 
             System.out.println("Starting Unpack...");
 
@@ -78,4 +98,303 @@ public class Unarchiver {
             System.out.println("Unpack Complete.");
         }
     }
-}
\ No newline at end of file
+
+    // ==================== COMPRESSED ARCHIVE ====================
+
+    /**
+     * @return true if the file is a compressed archive made by Archiver.createCompressedArchive.
+     */
+    public static boolean isCompressedArchive(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readByte() == 0 && in.readUnsignedByte() == HuffmanCompressor.FORMAT_ARCHIVE;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Lists the files in a compressed archive, straight from its central directory.
+     */
+    public List<ArchiveEntry> list(File archiveFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(archiveFile.toPath(), StandardOpenOption.READ)) {
+            return readIndex(channel).entries;
+        }
+    }
+
+    /**
+     * Extracts a single file of a compressed archive, reading only that entry.
+     * @param path The entry's relative path, as returned by list()
+     */
+    public void extract(File archiveFile, String path, File outputFile) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try (FileChannel channel = FileChannel.open(archiveFile.toPath(), StandardOpenOption.READ)) {
+            ArchiveIndex index = readIndex(channel);
+            for (ArchiveEntry entry : index.entries) {
+                if (entry.path.equals(path)) {
+                    File parentDir = outputFile.getAbsoluteFile().getParentFile();
+                    if (parentDir != null && !parentDir.exists()) {
+                        parentDir.mkdirs();
+                    }
+                    extractEntry(pool, channel, index.blockSize, entry, outputFile);
+                    return;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        throw new FileNotFoundException("No such entry in " + archiveFile.getName() + ": " + path);
+    }
+
+    /**
+     * Unpacks a compressed archive (HuffmanCompressor.FORMAT_ARCHIVE) into destFolder, on all cores.
+     * @return The number of bytes restored
+     * @throws IOException if any entry failed (the others are still extracted)
+     */
+    public long unpackCompressedArchive(File archiveFile, File destFolder) throws IOException {
+        long restored = 0;
+        int failed = 0;
+        Result firstFailure = null;
+        for (Result result : extractAll(archiveFile, destFolder, Runtime.getRuntime().availableProcessors())) {
+            if (result.error == null) {
+                restored += result.entry.size;
+            } else if (failed++ == 0) {
+                firstFailure = result;
+            }
+        }
+        if (firstFailure != null) {
+            throw new IOException(failed + " file(s) failed to extract, first: " + firstFailure.entry.path
+                    + " (" + firstFailure.error.getMessage() + ")", firstFailure.error);
+        }
+        return restored;
+    }
+
+    /**
+     * What happened to one entry of extractAll().
+     */
+    public static class Result {
+        public final ArchiveEntry entry;
+        public final Exception error; // null if the entry was extracted fine
+
+        Result(ArchiveEntry entry, Exception error) {
+            this.entry = entry;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Extracts every entry of a compressed archive, fanned out over 'threads' workers.
+     * Folders are created up front, each one once. Entries are written into preallocated
+     * files, and the blocks of a big entry are decoded in parallel as well.
+     * A failing entry does not stop the others: every entry gets its own Result, in directory order.
+     */
+    public List<Result> extractAll(File archiveFile, File destFolder, int threads) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (FileChannel channel = FileChannel.open(archiveFile.toPath(), StandardOpenOption.READ)) {
+            ArchiveIndex index = readIndex(channel);
+            List<ArchiveEntry> entries = index.entries;
+            Result[] results = new Result[entries.size()];
+
+            // 1. Resolve every target and collect the folders they need
+            destFolder.mkdirs();
+            String base = destFolder.getCanonicalPath() + File.separator;
+            File[] targets = new File[entries.size()];
+            Set<File> folders = new HashSet<>();
+            for (int i = 0; i < targets.length; i++) {
+                try {
+                    targets[i] = entryFile(destFolder, base, entries.get(i).path);
+                    folders.add(targets[i].getParentFile());
+                } catch (IOException e) {
+                    results[i] = new Result(entries.get(i), e);
+                }
+            }
+
+            // 2. Batch-create the folders
+            for (File folder : folders) {
+                folder.mkdirs();
+            }
+
+            // 3. Fan out: one task per entry (big entries fork their blocks onto the same pool)
+            List<Future<?>> tasks = new ArrayList<>(targets.length);
+            for (int i = 0; i < targets.length; i++) {
+                final ArchiveEntry entry = entries.get(i);
+                final File target = targets[i];
+                tasks.add(target == null ? null : pool.submit(() -> {
+                    extractEntry(pool, channel, index.blockSize, entry, target);
+                    return null;
+                }));
+            }
+
+            // 4. Results, in directory order
+            for (int i = 0; i < targets.length; i++) {
+                if (tasks.get(i) == null) continue;
+                try {
+                    Tasks.await(tasks.get(i));
+                    results[i] = new Result(entries.get(i), null);
+                } catch (IOException | RuntimeException e) {
+                    results[i] = new Result(entries.get(i), e);
+                }
+            }
+            return Arrays.asList(results);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // What the header and the central directory of a compressed archive say
+    static class ArchiveIndex {
+        int blockSize;
+        List<ArchiveEntry> entries;
+    }
+
+    static ArchiveIndex readIndex(FileChannel channel) throws IOException {
+        ArchiveIndex index = new ArchiveIndex();
+        long fileSize = channel.size();
+
+        // 1. Header
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0))));
+        if (in.readByte() != 0 || in.readUnsignedByte() != HuffmanCompressor.FORMAT_ARCHIVE) {
+            throw new IOException("Not a compressed archive.");
+        }
+        in.readUTF(); // Folder name (the caller picks where things go)
+        index.blockSize = in.readInt();
+        if (index.blockSize <= 0 || index.blockSize > HuffmanInputStream.MAX_BLOCK_SIZE) {
+            throw new IOException("Corrupt archive: bad block size " + index.blockSize);
+        }
+
+        // 2. Footer: where the directory starts
+        if (fileSize < 12) throw new IOException("Corrupt archive: no central directory.");
+        long directoryOffset = ByteBuffer.wrap(HuffmanCompressor.readFully(channel, fileSize - 8, 8)).getLong();
+        if (directoryOffset < 0 || directoryOffset > fileSize - 12) {
+            throw new IOException("Corrupt archive: bad central directory offset " + directoryOffset);
+        }
+
+        // 3. Central Directory
+        in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(directoryOffset)), 1 << 16));
+        int count = in.readInt();
+        if (count < 0) throw new IOException("Corrupt archive: bad entry count " + count);
+        index.entries = new ArrayList<>(Math.min(count, 1 << 16));
+        for (int i = 0; i < count; i++) {
+            ArchiveEntry entry = ArchiveEntry.read(in);
+            if (entry.offset + entry.storedSize > directoryOffset) {
+                throw new IOException("Corrupt archive: entry past the end of the data: " + entry.path);
+            }
+            index.entries.add(entry);
+        }
+        return index;
+    }
+
+    // Stored blocks at least this big are written from a mapped view of the archive
+    // (one copy in the kernel, none through the Java heap)
+    private static final int MAP_THRESHOLD = 64 * 1024;
+
+    // One block of an entry: writes its bytes at their place in the output, returns their CRC32
+    private interface BlockTask {
+        long run() throws IOException;
+    }
+
+    /**
+     * Decodes one entry into a preallocated file, then checks it against the directory's CRC32.
+     * Everything is positional, so the blocks of a multi-block entry run on the pool concurrently.
+     */
+    private static void extractEntry(ForkJoinPool pool, FileChannel archive, int blockSize, ArchiveEntry entry, File outputFile) throws IOException {
+        // 1. The entry header has to agree with the directory
+        //    (not on the path: deduplicated files point at the entry of the first copy)
+        long position = entry.offset;
+        int pathLength = ByteBuffer.wrap(HuffmanCompressor.readFully(archive, position, 4)).getInt();
+        if (pathLength <= 0 || pathLength > 1 << 16) {
+            throw new IOException("Corrupt archive: no entry at " + entry.offset);
+        }
+        position += 4 + pathLength;
+        if (ByteBuffer.wrap(HuffmanCompressor.readFully(archive, position, 8)).getLong() != entry.size) {
+            throw new IOException("Corrupt archive: directory does not match the entry at " + entry.offset);
+        }
+        position += 8;
+
+        try (RandomAccessFile raf = new RandomAccessFile(outputFile, "rw")) {
+            // 2. Preallocate
+            raf.setLength(entry.size);
+            FileChannel out = raf.getChannel();
+
+            // 3. Walk the block chain: [int blockLength][byte mode][...]
+            List<BlockTask> blocks = new ArrayList<>();
+            List<Integer> rawLengths = new ArrayList<>();
+            for (long outPos = 0; outPos < entry.size; ) {
+                final int rawLength = (int) Math.min(blockSize, entry.size - outPos);
+                ByteBuffer blockHeader = ByteBuffer.wrap(HuffmanCompressor.readFully(archive, position, 5));
+                final int blockLength = blockHeader.getInt();
+                // A block is never bigger than its stored form (mode byte + raw bytes)
+                if (blockLength < 1 || blockLength > rawLength + 1) {
+                    throw new IOException("Corrupt archive: bad block in " + entry.path);
+                }
+                final long blockPos = position + 4;
+                final long target = outPos;
+                if (blockHeader.get() == BlockCodec.MODE_STORED && rawLength >= MAP_THRESHOLD) {
+                    if (blockLength != rawLength + 1) {
+                        throw new IOException("Corrupt archive: bad stored block in " + entry.path);
+                    }
+                    blocks.add(() -> copyStored(archive, blockPos + 1, rawLength, out, target));
+                } else {
+                    blocks.add(() -> decodeBlock(archive, blockPos, blockLength, rawLength, out, target));
+                }
+                rawLengths.add(rawLength);
+                position += 4 + blockLength;
+                outPos += rawLength;
+            }
+
+            // 4. Run the blocks (right here if there is just one), stitch the CRCs together in order
+            long crc = 0; // CRC32 of the empty file
+            if (blocks.size() == 1) {
+                crc = blocks.get(0).run();
+            } else if (blocks.size() > 1) {
+                List<Future<Long>> tasks = new ArrayList<>(blocks.size());
+                for (BlockTask block : blocks) {
+                    tasks.add(pool.submit(block::run));
+                }
+                try {
+                    for (int i = 0; i < tasks.size(); i++) {
+                        crc = Archiver.crc32Combine(crc, Tasks.await(tasks.get(i)), rawLengths.get(i));
+                    }
+                } finally {
+                    for (Future<Long> task : tasks) task.cancel(false);
+                }
+            }
+
+            // 5. Checksum
+            if ((int) crc != entry.crc) {
+                throw new IOException("Checksum mismatch: " + entry.path);
+            }
+        }
+    }
+
+    private static long decodeBlock(FileChannel archive, long blockPos, int blockLength, int rawLength,
+                                    FileChannel out, long target) throws IOException {
+        byte[] block = HuffmanCompressor.readFully(archive, blockPos, blockLength);
+        byte[] raw = new byte[rawLength];
+        BlockCodec.decode(block, 0, blockLength, raw, 0, rawLength);
+        HuffmanCompressor.writeFully(out, target, raw);
+        CRC32 crc = new CRC32();
+        crc.update(raw, 0, rawLength);
+        return crc.getValue();
+    }
+
+    private static long copyStored(FileChannel archive, long dataPos, int rawLength,
+                                   FileChannel out, long target) throws IOException {
+        MappedByteBuffer data = archive.map(FileChannel.MapMode.READ_ONLY, dataPos, rawLength);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        data.rewind();
+        while (data.hasRemaining()) {
+            out.write(data, target + data.position());
+        }
+        return crc.getValue();
+    }
+
+    // Resolves an entry path inside destFolder (canonical path 'base'), refusing paths like "../../etc/passwd"
+    private static File entryFile(File destFolder, String base, String relativePath) throws IOException {
+        File outputFile = new File(destFolder, relativePath);
+        if (!outputFile.getCanonicalPath().startsWith(base)) {
+            throw new IOException("Corrupt archive: entry outside the destination folder: " + relativePath);
+        }
+        return outputFile;
+    }
+}